@@ -0,0 +1,103 @@
+package com.kenis.usermanager.benchmark;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserPrincipal;
+import com.kenis.usermanager.enumeration.Role;
+import com.kenis.usermanager.service.RevokedTokenStore;
+import com.kenis.usermanager.service.TokenEpochService;
+import com.kenis.usermanager.service.TokenEpochStore;
+import com.kenis.usermanager.service.TokenRevocationService;
+import com.kenis.usermanager.utility.JWTTokenProvider;
+import com.kenis.usermanager.utility.JwtKeyRing;
+import com.kenis.usermanager.utility.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Builds the authentication components outside of a Spring context, wired the same way the application wires them,
+ * for the benchmarks.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public final class AuthFixtures {
+
+    private AuthFixtures() {
+    }
+
+    /**
+     * Returns a started key ring signing with the given algorithm.
+     *
+     * @param signingAlgorithm RS256 or ES256
+     * @return a started key ring
+     * @throws IOException never, as the key ring generates its keys in memory
+     */
+    public static JwtKeyRing keyRing(String signingAlgorithm) throws IOException {
+        JwtKeyRing keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "signingAlgorithm", signingAlgorithm);
+        ReflectionTestUtils.setField(keyRing, "gracePeriod", 900_000L);
+        keyRing.init();
+        return keyRing;
+    }
+
+    /**
+     * Returns a started token provider.
+     *
+     * @param keyRing            the key ring to sign and verify with
+     * @param cacheEnabled       whether verified tokens are cached
+     * @param compactAuthorities whether issued tokens carry the compact authority bitmask
+     * @return a started token provider
+     */
+    public static JWTTokenProvider tokenProvider(JwtKeyRing keyRing, boolean cacheEnabled, boolean compactAuthorities) {
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(cacheEnabled, 10_000, new SimpleMeterRegistry());
+        JWTTokenProvider tokenProvider = new JWTTokenProvider(verifiedTokenCache, keyRing);
+        ReflectionTestUtils.setField(tokenProvider, "secret", "");
+        ReflectionTestUtils.setField(tokenProvider, "compactAuthorities", compactAuthorities);
+        tokenProvider.init();
+        return tokenProvider;
+    }
+
+    /**
+     * Returns a revocation service with nothing revoked.
+     *
+     * @return a revocation service
+     */
+    public static TokenRevocationService tokenRevocationService() {
+        return new TokenRevocationService(Mockito.mock(RevokedTokenStore.class), 10_000, 60_000);
+    }
+
+    /**
+     * Returns an epoch service with no advanced epoch.
+     *
+     * @return an epoch service
+     */
+    public static TokenEpochService tokenEpochService() {
+        return new TokenEpochService(Mockito.mock(TokenEpochStore.class), 60_000);
+    }
+
+    /**
+     * Returns the principal of an active user with the given role.
+     *
+     * @param role the role of the user
+     * @return the principal of the user
+     */
+    public static UserPrincipal userPrincipal(Role role) {
+        User user = new User();
+        user.setId(1L);
+        user.setUserId("ID_1");
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setUsername("jane.doe");
+        user.setEmail("jane.doe@example.com");
+        user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z3ZvqA5jQ/5H6dMxF8jj.3yK");
+        user.setProfileImageUrl("http://localhost/user/image/profile/jane.doe");
+        user.setJoinDate(new Date());
+        user.setRole(role.name());
+        user.setIsActive(true);
+        user.setIsNotLocked(true);
+        return new UserPrincipal(user);
+    }
+}
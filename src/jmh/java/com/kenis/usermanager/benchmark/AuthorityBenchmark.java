@@ -0,0 +1,50 @@
+package com.kenis.usermanager.benchmark;
+
+import com.kenis.usermanager.domain.UserPrincipal;
+import com.kenis.usermanager.enumeration.Role;
+import com.kenis.usermanager.utility.AuthorityRegistry;
+import com.kenis.usermanager.utility.AuthoritySet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of materializing and checking granted authorities.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorityBenchmark {
+
+    @Param({"ROLE_USER", "ROLE_SUPER_ADMIN"})
+    public Role role;
+
+    private UserPrincipal userPrincipal;
+    private AuthoritySet authorities;
+
+    @Setup
+    public void setUp() {
+        userPrincipal = AuthFixtures.userPrincipal(role);
+        authorities = userPrincipal.getAuthorities();
+    }
+
+    @Benchmark
+    public AuthoritySet userPrincipalGetAuthorities() {
+        return userPrincipal.getAuthorities();
+    }
+
+    @Benchmark
+    public AuthoritySet internTokenAuthorities() {
+        return AuthorityRegistry.intern(role.getAuthorities());
+    }
+
+    @Benchmark
+    public boolean hasAuthority() {
+        return AuthorityRegistry.hasAuthority(authorities, "user:delete");
+    }
+}
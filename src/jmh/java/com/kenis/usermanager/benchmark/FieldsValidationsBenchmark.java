@@ -0,0 +1,45 @@
+package com.kenis.usermanager.benchmark;
+
+import com.kenis.usermanager.exception.domain.BlankFieldException;
+import com.kenis.usermanager.utility.FieldsValidations;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating the fields of a registration and of a user update.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldsValidationsBenchmark {
+
+    private final FieldsValidations validations = new FieldsValidations();
+
+    private final FieldsValidations.FieldDTO registration =
+            new FieldsValidations.FieldDTO("jane.doe", "jane.doe@example.com", "Jane", "Doe");
+
+    @Benchmark
+    public void validateFieldsRegistration() throws BlankFieldException {
+        validations.validateFieldsRegistration(registration);
+    }
+
+    @Benchmark
+    public void validateFields() throws BlankFieldException {
+        validations.validateFields(List.of(
+                new FieldsValidations.Field("First Name", "Jane"),
+                new FieldsValidations.Field("Last Name", "Doe"),
+                new FieldsValidations.Field("Username", "jane.doe"),
+                new FieldsValidations.Field("Email", "jane.doe@example.com"),
+                new FieldsValidations.Field("Role", "ROLE_USER"),
+                new FieldsValidations.Field("isNotLocked", "true"),
+                new FieldsValidations.Field("isActive", "true")
+        ));
+    }
+}
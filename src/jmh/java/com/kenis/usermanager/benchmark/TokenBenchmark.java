@@ -0,0 +1,77 @@
+package com.kenis.usermanager.benchmark;
+
+import com.kenis.usermanager.domain.UserPrincipal;
+import com.kenis.usermanager.domain.VerifiedToken;
+import com.kenis.usermanager.enumeration.Role;
+import com.kenis.usermanager.utility.AuthoritySet;
+import com.kenis.usermanager.utility.JWTTokenProvider;
+import com.kenis.usermanager.utility.JwtKeyRing;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of issuing and verifying JWT tokens with {@link JWTTokenProvider}, with and without the verified-token
+ * cache, for both token formats.
+ * <p>
+ * Run with {@code mvn -Pbenchmark verify}; add {@code -prof gc} results (enabled by the profile) for allocation per
+ * operation.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+    @Param({"RS256", "ES256"})
+    public String signingAlgorithm;
+
+    @Param({"false", "true"})
+    public boolean compactAuthorities;
+
+    private JWTTokenProvider uncachedTokenProvider;
+    private JWTTokenProvider cachedTokenProvider;
+    private UserPrincipal userPrincipal;
+    private String token;
+
+    @Setup
+    public void setUp() throws IOException {
+        JwtKeyRing keyRing = AuthFixtures.keyRing(signingAlgorithm);
+        uncachedTokenProvider = AuthFixtures.tokenProvider(keyRing, false, compactAuthorities);
+        cachedTokenProvider = AuthFixtures.tokenProvider(keyRing, true, compactAuthorities);
+        userPrincipal = AuthFixtures.userPrincipal(Role.ROLE_SUPER_ADMIN);
+        token = uncachedTokenProvider.generateJwtToken(userPrincipal);
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return uncachedTokenProvider.generateJwtToken(userPrincipal);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyToken() {
+        return uncachedTokenProvider.verifyToken(token);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyTokenCached() {
+        return cachedTokenProvider.verifyToken(token);
+    }
+
+    /**
+     * The three calls the security filter made per request before it verified each token once.
+     */
+    @Benchmark
+    public void getSubjectIsTokenValidGetAuthorities(Blackhole blackhole) {
+        String username = uncachedTokenProvider.getSubject(token);
+        blackhole.consume(uncachedTokenProvider.isTokenValid(username, token));
+        AuthoritySet authorities = uncachedTokenProvider.getAuthorities(token);
+        blackhole.consume(authorities);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kenis.usermanager.filter;
+
+import com.kenis.usermanager.benchmark.AuthFixtures;
+import com.kenis.usermanager.enumeration.Role;
+import com.kenis.usermanager.utility.JWTTokenProvider;
+import com.kenis.usermanager.utility.JwtKeyRing;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.kenis.usermanager.constant.SecurityConstant.TOKEN_PREFIX;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+/**
+ * Cost of {@link JwtAuthorizationFilter#doFilterInternal} for an authenticated request, with mock servlet objects.
+ * This benchmark lives in the filter package so that it can call the protected method directly.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthorizationFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private JwtAuthorizationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain filterChain = (servletRequest, servletResponse) -> { };
+
+    @Setup
+    public void setUp() throws IOException {
+        JwtKeyRing keyRing = AuthFixtures.keyRing("RS256");
+        JWTTokenProvider tokenProvider = AuthFixtures.tokenProvider(keyRing, cacheEnabled, false);
+        filter = new JwtAuthorizationFilter(tokenProvider, AuthFixtures.tokenRevocationService(),
+                AuthFixtures.tokenEpochService());
+        String token = tokenProvider.generateJwtToken(AuthFixtures.userPrincipal(Role.ROLE_ADMIN));
+        request = new MockHttpServletRequest("GET", "/user/list");
+        request.addHeader(AUTHORIZATION, TOKEN_PREFIX + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void doFilterInternal() throws Exception {
+        try {
+            filter.doFilterInternal(request, response, filterChain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.kenis.usermanager.constant.SecurityConstant;
 import com.kenis.usermanager.filter.JwtAccessDeniedHandler;
 import com.kenis.usermanager.filter.JwtAuthenticationEntryPoint;
 import com.kenis.usermanager.filter.JwtAuthorizationFilter;
+import com.kenis.usermanager.filter.RateLimitingFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
@@ -16,7 +17,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 /**
  * This class represents the security configuration for the application.
@@ -32,33 +33,37 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final JwtAuthorizationFilter jwtAuthorizationFilter;
+    private final RateLimitingFilter rateLimitingFilter;
     private final JwtAccessDeniedHandler jwtAccessDeniedHandler;
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     private final UserDetailsService userDetailsService;
 
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordEncoder passwordEncoder;
 
     /**
      * Creates a new instance of the SecurityConfiguration class.
      *
      * @param jwtAuthorizationFilter The JWT authorization filter.
+     * @param rateLimitingFilter The filter throttling the expensive public endpoints.
      * @param jwtAccessDeniedHandler The JWT access denied handler.
      * @param jwtAuthenticationEntryPoint The JWT authentication entry point.
      * @param userDetailsService The user details service.
-     * @param bCryptPasswordEncoder The BCrypt password encoder.
+     * @param passwordEncoder The password encoder, which hashes on a bounded pool of workers.
      */
     @Autowired
     public SecurityConfiguration (JwtAuthorizationFilter jwtAuthorizationFilter,
+                                  RateLimitingFilter rateLimitingFilter,
                                   JwtAccessDeniedHandler jwtAccessDeniedHandler,
                                   JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
                                   @Qualifier("UserDetailsService") UserDetailsService userDetailsService,
-                                  BCryptPasswordEncoder bCryptPasswordEncoder
+                                  PasswordEncoder passwordEncoder
                                   ) {
         this.jwtAuthorizationFilter = jwtAuthorizationFilter;
+        this.rateLimitingFilter = rateLimitingFilter;
         this.jwtAccessDeniedHandler = jwtAccessDeniedHandler;
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.userDetailsService = userDetailsService;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.passwordEncoder = passwordEncoder;
 
     }
 
@@ -71,7 +76,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
      */
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
     }
 
     /**
@@ -94,6 +99,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .exceptionHandling().accessDeniedHandler(jwtAccessDeniedHandler)
                 .authenticationEntryPoint(jwtAuthenticationEntryPoint)
                 .and()
+                .addFilterBefore(rateLimitingFilter, UsernamePasswordAuthenticationFilter.class) // rejects floods before any token or password check
                 .addFilterBefore(jwtAuthorizationFilter, UsernamePasswordAuthenticationFilter.class);
     }
 
@@ -8,9 +8,15 @@ package com.kenis.usermanager.constant;
  */
 public class SecurityConstant {
     /**
-     * The expiration time for JWTs in the application, in milliseconds.
+     * The expiration time for JWTs (access tokens) in the application, in milliseconds.
      */
-    public static final long EXPIRATION_TIM = 86_400_000; // 1 day expressed in milliseconds
+    public static final long EXPIRATION_TIM = 900_000; // 15 minutes expressed in milliseconds
+    public static final long LEGACY_EXPIRATION_TIME = 86_400_000; // 1 day, the lifetime of the legacy HMAC512 tokens
+
+    /**
+     * The expiration time for refresh tokens in the application, in milliseconds.
+     */
+    public static final long REFRESH_TOKEN_EXPIRATION_TIME = 604_800_000; // 7 days expressed in milliseconds
 
     /**
      * The prefix to be used in the 'Authorization' header of requests that contain a JWT.
@@ -22,11 +28,91 @@ public class SecurityConstant {
      */
     public static final String JWT_TOKEN_HEADER = "Jwt-Token";
 
+    /**
+     * The name of the header to be used to pass the refresh token to and from the application.
+     */
+    public static final String REFRESH_TOKEN_HEADER = "Refresh-Token";
+
+    /**
+     * The message to be shown when a refresh token cannot be used.
+     */
+    public static final String INVALID_REFRESH_TOKEN = "Refresh token is invalid or expired. Please log in again";
+
+    /**
+     * The message to be logged when the expired refresh tokens are deleted.
+     */
+    public static final String EXPIRED_REFRESH_TOKENS_DELETED = "Deleted expired refresh tokens: ";
+
+    /**
+     * The message to be logged when the login attempts that have left the window are deleted.
+     */
+    public static final String EXPIRED_LOGIN_ATTEMPTS_DELETED = "Deleted expired login attempt buckets: ";
+
+    /**
+     * The message to be logged when the token epochs outlived by every token are deleted.
+     */
+    public static final String EXPIRED_TOKEN_EPOCHS_DELETED = "Deleted expired token epochs: ";
+
+    /**
+     * The message to be logged when the expired revoked tokens are deleted from the shared store.
+     */
+    public static final String EXPIRED_REVOKED_TOKENS_DELETED = "Deleted expired revoked tokens: ";
+
+    /**
+     * The message to be logged when the ids of expired revoked tokens are pruned.
+     */
+    public static final String REVOKED_TOKEN_IDS_PRUNED = "Pruned expired revoked token ids: ";
+
     /**
      * The message to be shown when a JWT cannot be verified.
      */
     public static final String TOKEN_CANNOT_BE_VERIFIED = "Token cannot be verified";
 
+    /**
+     * The message to be logged when the JWT signing key is rotated.
+     */
+    public static final String SIGNING_KEY_ROTATED = "JWT signing key rotated, new key id: ";
+
+    /**
+     * The message to be logged when no shared JWT key directory is configured.
+     */
+    public static final String SIGNING_KEYS_NOT_SHARED = "No jwt.keys.directory configured: JWT signing keys are generated in memory and only this instance will accept the tokens it issues";
+
+    /**
+     * The message to be logged when the shared JWT keys cannot be read again.
+     */
+    public static final String SIGNING_KEYS_NOT_RELOADED = "Could not reload the JWT keys, keeping the current ones: ";
+
+    /**
+     * The message to be shown when none of the shared JWT keys can sign tokens.
+     */
+    public static final String NO_SIGNING_KEY = "No JWT key with a private key to sign with in: ";
+
+    /**
+     * The message to be shown when a shared JWT key file cannot be read.
+     */
+    public static final String INVALID_SIGNING_KEY = "Invalid JWT key file: ";
+
+    /**
+     * The message to be shown when the configured JWT signing algorithm is not supported.
+     */
+    public static final String UNSUPPORTED_SIGNING_ALGORITHM = "Unsupported JWT signing algorithm: ";
+
+    /**
+     * The message to be shown when every password worker is busy and the queue in front of them is full.
+     */
+    public static final String PASSWORD_ENCODER_OVERLOADED = "Too many password requests at the moment. Please try again shortly";
+
+    /**
+     * The message to be shown when the bcrypt cost factor has been calibrated.
+     */
+    public static final String PASSWORD_ENCODER_CALIBRATED = "Bcrypt cost factor calibrated to: ";
+
+    /**
+     * The message to be logged when a stored password hash has been replaced by one in the current format.
+     */
+    public static final String PASSWORD_REHASHED = "Rehashed the password of user: ";
+
     /**
      * The name of the company that owns the application.
      */
@@ -42,6 +128,21 @@ public class SecurityConstant {
      */
     public static final String AUTHORITIES = "authorities";
 
+    /**
+     * The key for the compact authorities claim in the JWT, holding the bitmask of the authorities.
+     */
+    public static final String AUTHORITY_MASK = "amask";
+
+    /**
+     * The key for the token epoch claim in the JWT.
+     */
+    public static final String TOKEN_EPOCH = "epoch";
+
+    /**
+     * The key for the claim in the JWT holding the database id of the user.
+     */
+    public static final String USER_ID = "uid";
+
     /**
      * The message to be shown when a user tries to access a protected resource without being authenticated.
      */
@@ -52,6 +153,16 @@ public class SecurityConstant {
      */
     public static final String ACCESS_DENIED_MESSAGE = "you do not have permission to access this page";
 
+    /**
+     * The message to be shown when a client sends too many requests to a throttled endpoint.
+     */
+    public static final String TOO_MANY_REQUESTS_MESSAGE = "Too many requests. Please try again later";
+
+    /**
+     * The message to be shown when the body of a throttled request is too large to be read.
+     */
+    public static final String REQUEST_BODY_TOO_LARGE_MESSAGE = "The request body is too large";
+
     /**
      * The 'OPTIONS' HTTP method.
      */
@@ -60,5 +171,5 @@ public class SecurityConstant {
     /**
      * An array of URLs that are public and do not require authentication.
      */
-    public static final String[] PUBLIC_URLS = {"/user/login", "/user/register", "/user/reset-password/**", "/user/image/**"};
+    public static final String[] PUBLIC_URLS = {"/user/login", "/user/register", "/user/reset-password/**", "/user/image/**", "/user/keys", "/user/token/refresh"};
 }
@@ -23,6 +23,14 @@ public class UserImpConstant {
     public static final String NO_USER_FOUND_BY_EMAIL = "No User Found for email: ";
     public static final String NO_USER_FOUND_BY_IDENTIFIER = "No User Found by this Identifier: ";
     public static final String BLANK_FIELD_MESSAGE = " a required field and cannot be empty or blank";
+    /** The constant for the message shown when a user is given a role that does not exist. */
+    public static final String UNKNOWN_ROLE_MESSAGE = "Role is not a known role: ";
+    public static final String LAST_LOGIN_DATES_FLUSHED = "Flushed last login dates of users: ";
+    public static final String USERNAME_UNIQUE_CONSTRAINT = "user_details_username_unique";
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "user_details_email_unique";
+    public static final String USER_ID_UNIQUE_CONSTRAINT = "user_details_user_id_unique";
+    /** The constant for the message shown when a generated user id is already taken. */
+    public static final String USER_ID_ALREADY_EXISTS = "The generated user id is already taken. Please try again";
 
     //TODO add noBlank noEmpty for all user filed
 }
\ No newline at end of file
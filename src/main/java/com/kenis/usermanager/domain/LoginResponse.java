@@ -0,0 +1,58 @@
+package com.kenis.usermanager.domain;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+
+/**
+ * The body of a successful login response.
+ * <p>
+ * It is built straight from the {@link UserPrincipal} the authentication manager returns, so the login endpoint does
+ * not read the user again. It keeps the JSON field names of {@link User}, leaving out the password hash and the token
+ * epoch.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@Getter
+@ToString
+public final class LoginResponse {
+    private final Long id;
+    private final String userId;
+    private final String firstName;
+    private final String lastName;
+    private final String username;
+    private final String email;
+    private final String profileImageUrl;
+    private final Date lastLoginDate;
+    private final Date lastLoginDateDisplay;
+    private final Date joinDate;
+    private final String role;
+    private final String[] authorities;
+    private final Boolean isActive;
+    private final Boolean isNotLocked;
+
+    /**
+     * Constructs a new {@code LoginResponse} from the principal of an authenticated user.
+     *
+     * @param userPrincipal the principal of the authenticated user
+     */
+    public LoginResponse(UserPrincipal userPrincipal) {
+        User user = userPrincipal.getUser();
+        this.id = user.getId();
+        this.userId = user.getUserId();
+        this.firstName = user.getFirstName();
+        this.lastName = user.getLastName();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.profileImageUrl = user.getProfileImageUrl();
+        this.lastLoginDate = user.getLastLoginDate();
+        this.lastLoginDateDisplay = user.getLastLoginDateDisplay();
+        this.joinDate = user.getJoinDate();
+        this.role = user.getRole();
+        this.authorities = userPrincipal.getAuthorities().getNames();
+        this.isActive = user.getIsActive();
+        this.isNotLocked = user.getIsNotLocked();
+    }
+}
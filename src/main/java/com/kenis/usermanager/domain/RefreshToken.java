@@ -0,0 +1,53 @@
+package com.kenis.usermanager.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * This class represents a refresh token issued to a user at login. Only a digest of the opaque token is stored, so a
+ * leaked table cannot be used to mint access tokens. A refresh token can be used exactly once: using it deletes it
+ * and issues a new one.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "refresh_token", uniqueConstraints = {
+        @UniqueConstraint(name = "refresh_token_token_hash_unique", columnNames = "tokenHash")
+})
+public class RefreshToken implements Serializable {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(
+            name = "id",
+            nullable = false,
+            updatable = false)
+    private Long id;
+
+    @Column(nullable = false)
+    private String tokenHash;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Date expiresAt;
+
+    //= Constructors ==
+
+    public RefreshToken(String tokenHash, Long userId, Date expiresAt) {
+        this.tokenHash = tokenHash;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,41 @@
+package com.kenis.usermanager.domain;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A revoked JWT as stored in the shared {@code revoked_token} table.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Getter
+@ToString
+public final class RevokedToken {
+    /**
+     * The id of the token, read from its {@code jti} claim.
+     */
+    private final String tokenId;
+
+    /**
+     * The expiry of the token, in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * When the token was revoked, in milliseconds since the epoch.
+     */
+    private final long revokedAt;
+
+    /**
+     * Constructs a new {@code RevokedToken} with the given token id, expiry and revocation time.
+     *
+     * @param tokenId   the id of the token
+     * @param expiresAt the expiry of the token, in milliseconds since the epoch
+     * @param revokedAt when the token was revoked, in milliseconds since the epoch
+     */
+    public RevokedToken(String tokenId, long expiresAt, long revokedAt) {
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+        this.revokedAt = revokedAt;
+    }
+}
@@ -1,5 +1,6 @@
 package com.kenis.usermanager.domain;
 
+import com.kenis.usermanager.enumeration.Role;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -7,16 +8,15 @@ import lombok.ToString;
 
 import javax.persistence.*;
 import java.io.Serializable;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.Objects;
 
 /**
  * This class represents a user of the application. It contains information such as the user's id, first and last name,
  * <p>
- * username, password, email, profile image URL, last login date, join date, role, authorities, and whether the user is
+ * username, password, email, profile image URL, last login date, join date, role, and whether the user is
  * <p>
- * active and not locked. It also overrides the equals and hashCode methods and includes a no-args constructor and a
+ * active and not locked. The authorities of the user are not stored: they are derived from the {@link Role}. It also overrides the equals and hashCode methods and includes a no-args constructor and a
  * <p>
  * constructor with all properties as arguments.
  *
@@ -30,7 +30,8 @@ import java.util.Objects;
 @Entity
 @Table(name = "user_details", uniqueConstraints = {
         @UniqueConstraint(name = "user_details_email_unique", columnNames = "email"),
-        @UniqueConstraint(name = "user_details_user_id_unique", columnNames = "userId")
+        @UniqueConstraint(name = "user_details_user_id_unique", columnNames = "userId"),
+        @UniqueConstraint(name = "user_details_username_unique", columnNames = "username")
 })
 public class User implements Serializable {
     @Id
@@ -74,10 +75,7 @@ public class User implements Serializable {
     private Date joinDate;
 
     @Column(nullable = false)
-    private String role; //ROLE_USER{delete, update, create}, ROLE_ADMIN, ROLE_SUPERADMIN // TODO replace the [] with SET or List
-
-    @Column(nullable = false)
-    private String[] authorities; // TODO replace the [] with SET or List
+    private String role; //ROLE_USER{delete, update, create}, ROLE_ADMIN, ROLE_SUPERADMIN
 
     @Column(nullable = false)
     private Boolean isActive;
@@ -85,9 +83,12 @@ public class User implements Serializable {
     @Column(nullable = false)
     private Boolean isNotLocked;
 
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private Integer tokenEpoch = 0; // advanced to reject every token issued before a lock, disable or role change
+
     //= Constructors ==
 
-    public User(String userId, String firstName, String lastName, String username, String password, String email, String profileImageUrl, Date lastLoginDate, Date lastLoginDateDisplay, Date joinDate, String role, String[] authorities, Boolean isActive, Boolean isNotLocked) {
+    public User(String userId, String firstName, String lastName, String username, String password, String email, String profileImageUrl, Date lastLoginDate, Date lastLoginDateDisplay, Date joinDate, String role, Boolean isActive, Boolean isNotLocked) {
         this.userId = userId;
         this.firstName = firstName;
         this.lastName = lastName;
@@ -99,11 +100,21 @@ public class User implements Serializable {
         this.lastLoginDateDisplay = lastLoginDateDisplay;
         this.joinDate = joinDate;
         this.role = role;
-        this.authorities = authorities;
         this.isActive = isActive;
         this.isNotLocked = isNotLocked;
     }
 
+    //= Derived Properties ==
+
+    /**
+     * Returns the authorities of the user, as granted by their role.
+     *
+     * @return the authorities of the role of the user
+     */
+    public String[] getAuthorities() {
+        return Role.valueOf(role).getAuthorities();
+    }
+
     //= Equal & hashCode ==
 
     @Override
@@ -111,13 +122,11 @@ public class User implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         User user = (User) o;
-        return Objects.equals(id, user.id) && Objects.equals(userId, user.userId) && Objects.equals(firstName, user.firstName) && Objects.equals(lastName, user.lastName) && Objects.equals(username, user.username) && Objects.equals(password, user.password) && Objects.equals(email, user.email) && Objects.equals(profileImageUrl, user.profileImageUrl) && Objects.equals(lastLoginDate, user.lastLoginDate) && Objects.equals(lastLoginDateDisplay, user.lastLoginDateDisplay) && Objects.equals(joinDate, user.joinDate) && Objects.equals(role, user.role) && Arrays.equals(authorities, user.authorities) && Objects.equals(isActive, user.isActive) && Objects.equals(isNotLocked, user.isNotLocked);
+        return Objects.equals(id, user.id) && Objects.equals(userId, user.userId) && Objects.equals(firstName, user.firstName) && Objects.equals(lastName, user.lastName) && Objects.equals(username, user.username) && Objects.equals(password, user.password) && Objects.equals(email, user.email) && Objects.equals(profileImageUrl, user.profileImageUrl) && Objects.equals(lastLoginDate, user.lastLoginDate) && Objects.equals(lastLoginDateDisplay, user.lastLoginDateDisplay) && Objects.equals(joinDate, user.joinDate) && Objects.equals(role, user.role) && Objects.equals(isActive, user.isActive) && Objects.equals(isNotLocked, user.isNotLocked) && Objects.equals(tokenEpoch, user.tokenEpoch);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(id, userId, firstName, lastName, username, password, email, profileImageUrl, lastLoginDate, lastLoginDateDisplay, joinDate, role, isActive, isNotLocked);
-        result = 31 * result + Arrays.hashCode(authorities);
-        return result;
+        return Objects.hash(id, userId, firstName, lastName, username, password, email, profileImageUrl, lastLoginDate, lastLoginDateDisplay, joinDate, role, isActive, isNotLocked, tokenEpoch);
     }
 }
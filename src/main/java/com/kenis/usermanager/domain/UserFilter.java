@@ -0,0 +1,36 @@
+package com.kenis.usermanager.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The server-side filters of the paginated user list. A null field does not filter.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserFilter {
+    /**
+     * The exact role of the users, e.g. {@code ROLE_USER}.
+     */
+    private final String role;
+
+    /**
+     * Whether the users are active.
+     */
+    private final Boolean isActive;
+
+    /**
+     * Whether the users are not locked.
+     */
+    private final Boolean isNotLocked;
+
+    /**
+     * A case-insensitive prefix of the username or of the email of the users.
+     */
+    private final String prefix;
+}
@@ -0,0 +1,14 @@
+package com.kenis.usermanager.domain;
+
+/**
+ * A projection of {@link User} holding only the id, the username and the email address of a user.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public interface UserIdentity {
+    Long getId();
+
+    String getUsername();
+
+    String getEmail();
+}
@@ -0,0 +1,32 @@
+package com.kenis.usermanager.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * One page of the user list, in id order.
+ * <p>
+ * The page does not carry an offset: the next page is requested with the id of the last user of this page
+ * ({@link #getNextCursor()}), so fetching any page costs the same however deep it is.
+ *
+ * @param <T> the type of the listed users
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserPage<T> {
+    /**
+     * The users of the page.
+     */
+    private final List<T> users;
+
+    /**
+     * The cursor to request the next page with, or null if this is the last page.
+     */
+    private final Long nextCursor;
+}
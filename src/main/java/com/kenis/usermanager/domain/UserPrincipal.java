@@ -1,14 +1,10 @@
 package com.kenis.usermanager.domain;
 
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import com.kenis.usermanager.enumeration.Role;
+import com.kenis.usermanager.utility.AuthorityRegistry;
+import com.kenis.usermanager.utility.AuthoritySet;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.util.Collection;
-import java.util.stream.Collectors;
-
-import static java.util.Arrays.stream;
-
 /**
  * A class representing a user's principal in the application's security system. This class implements the
  * <p>
@@ -30,15 +26,22 @@ public class UserPrincipal implements UserDetails {
     }
 
     /**
-     * Returns the granted authorities for the user.
+     * Returns the user this principal was created for.
+     *
+     * @return the user
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Returns the shared, immutable set of granted authorities for the user, precomputed for their role.
      *
      * @return the granted authorities for the user
      */
     @Override
-    public Collection<? extends GrantedAuthority> getAuthorities() {
-        return stream(user.getAuthorities())
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    public AuthoritySet getAuthorities() {
+        return AuthorityRegistry.forRole(Role.valueOf(user.getRole()));
     }
 
     /**
@@ -55,6 +58,24 @@ public class UserPrincipal implements UserDetails {
         return user.getUsername();
     }
 
+    /**
+     * Returns the database id of the user, embedded in the tokens issued to them.
+     *
+     * @return the database id of the user
+     */
+    public Long getId() {
+        return user.getId();
+    }
+
+    /**
+     * Returns the token epoch of the user, embedded in the tokens issued to them.
+     *
+     * @return the token epoch of the user
+     */
+    public int getTokenEpoch() {
+        return user.getTokenEpoch() == null ? 0 : user.getTokenEpoch();
+    }
+
     @Override
     public boolean isAccountNonExpired() {
         return true; //TODO add this to user model
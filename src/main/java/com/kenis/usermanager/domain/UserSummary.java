@@ -0,0 +1,95 @@
+package com.kenis.usermanager.domain;
+
+import com.kenis.usermanager.enumeration.Role;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+
+/**
+ * A read-only view of a user, as shown in the user list and the user lookup.
+ * <p>
+ * The list queries select these columns straight into this class with a constructor expression, so the password
+ * hash is not read from the database and no managed {@link User} entity (and its dirty checking snapshot) is created.
+ * It keeps the JSON fields of {@link User}, including the authorities derived from the role, and leaves out only the
+ * password hash.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@Getter
+@ToString
+public final class UserSummary {
+    private final Long id;
+    private final String userId;
+    private final String firstName;
+    private final String lastName;
+    private final String username;
+    private final String email;
+    private final String profileImageUrl;
+    private final Date lastLoginDate;
+    private final Date lastLoginDateDisplay;
+    private final Date joinDate;
+    private final String role;
+    private final Boolean isActive;
+    private final Boolean isNotLocked;
+
+    /**
+     * Constructs a new {@code UserSummary} with the given columns, in the order the projection queries select them.
+     *
+     * @param id                   the database id of the user
+     * @param userId               the public id of the user
+     * @param firstName            the first name of the user
+     * @param lastName             the last name of the user
+     * @param username             the username of the user
+     * @param email                the email address of the user
+     * @param profileImageUrl      the URL of the profile image of the user
+     * @param lastLoginDate        the date of the last login of the user
+     * @param lastLoginDateDisplay the date of the login before the last one
+     * @param joinDate             the date the user joined
+     * @param role                 the role of the user
+     * @param isActive             whether the user is active
+     * @param isNotLocked          whether the user is not locked
+     */
+    public UserSummary(Long id, String userId, String firstName, String lastName, String username, String email,
+                       String profileImageUrl, Date lastLoginDate, Date lastLoginDateDisplay, Date joinDate,
+                       String role, Boolean isActive, Boolean isNotLocked) {
+        this.id = id;
+        this.userId = userId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.username = username;
+        this.email = email;
+        this.profileImageUrl = profileImageUrl;
+        this.lastLoginDate = lastLoginDate;
+        this.lastLoginDateDisplay = lastLoginDateDisplay;
+        this.joinDate = joinDate;
+        this.role = role;
+        this.isActive = isActive;
+        this.isNotLocked = isNotLocked;
+    }
+
+    /**
+     * Returns the summary of the given user, for lookups answered from an already loaded user.
+     *
+     * @param user the user
+     * @return the summary of the user
+     */
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getUserId(), user.getFirstName(), user.getLastName(),
+                user.getUsername(), user.getEmail(), user.getProfileImageUrl(), user.getLastLoginDate(),
+                user.getLastLoginDateDisplay(), user.getJoinDate(), user.getRole(), user.getIsActive(),
+                user.getIsNotLocked());
+    }
+
+    //= Derived Properties ==
+
+    /**
+     * Returns the authorities of the user, as granted by their role.
+     *
+     * @return the authorities of the role of the user
+     */
+    public String[] getAuthorities() {
+        return Role.valueOf(role).getAuthorities();
+    }
+}
@@ -0,0 +1,41 @@
+package com.kenis.usermanager.domain;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The token epoch of a user as stored in the shared {@code token_epoch} table, with the time it was last advanced.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Getter
+@ToString
+public final class UserTokenEpoch {
+    /**
+     * The database id of the user.
+     */
+    private final long userId;
+
+    /**
+     * The current token epoch of the user.
+     */
+    private final int tokenEpoch;
+
+    /**
+     * When the epoch was last advanced, in milliseconds since the epoch.
+     */
+    private final long updatedAt;
+
+    /**
+     * Constructs a new {@code UserTokenEpoch} with the given user id, token epoch and update time.
+     *
+     * @param userId     the database id of the user
+     * @param tokenEpoch the current token epoch of the user
+     * @param updatedAt  when the epoch was last advanced, in milliseconds since the epoch
+     */
+    public UserTokenEpoch(long userId, int tokenEpoch, long updatedAt) {
+        this.userId = userId;
+        this.tokenEpoch = tokenEpoch;
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,87 @@
+package com.kenis.usermanager.domain;
+
+import com.kenis.usermanager.utility.AuthoritySet;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+
+/**
+ * An immutable snapshot of a JWT whose signature and issuer have already been verified.
+ * <p>
+ * The token is verified exactly once and everything the security filter needs (the token id, the subject, the user id, the expiry
+ * and the granted authorities) is read from this object instead of verifying the raw token again for every claim.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@Getter
+@ToString
+public final class VerifiedToken {
+    /**
+     * The unique id of the token, read from its {@code jti} claim, or null for tokens issued without one.
+     */
+    private final String tokenId;
+
+    /**
+     * The subject (username) of the token.
+     */
+    private final String subject;
+
+    /**
+     * The database id of the user the token was issued to, or null for tokens issued without one.
+     */
+    private final Long userId;
+
+    /**
+     * The expiry of the token, in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * The token epoch of the user at the time the token was issued, or 0 for tokens issued without one.
+     */
+    private final int tokenEpoch;
+
+    /**
+     * The shared, immutable set of authorities granted by the token.
+     */
+    private final AuthoritySet authorities;
+
+    /**
+     * Whether the token is a legacy HMAC512 token, which carries neither a user id nor a token epoch.
+     */
+    private final boolean legacy;
+
+    /**
+     * Constructs a new {@code VerifiedToken} with the given id, subject, user id, expiry, token epoch and authorities.
+     *
+     * @param tokenId     the unique id of the token
+     * @param subject     the subject of the token
+     * @param userId      the database id of the user the token was issued to
+     * @param expiresAt   the expiry of the token
+     * @param tokenEpoch  the token epoch of the user at the time the token was issued
+     * @param authorities the authorities granted by the token
+     * @param legacy      whether the token is a legacy HMAC512 token
+     */
+    public VerifiedToken(String tokenId, String subject, Long userId, Date expiresAt, int tokenEpoch,
+                         AuthoritySet authorities, boolean legacy) {
+        this.tokenId = tokenId;
+        this.subject = subject;
+        this.userId = userId;
+        this.expiresAt = expiresAt.getTime();
+        this.tokenEpoch = tokenEpoch;
+        this.authorities = authorities;
+        this.legacy = legacy;
+    }
+
+    /**
+     * Returns true if the token has expired at the given instant, false otherwise.
+     *
+     * @param now the current time, in milliseconds since the epoch
+     * @return true if the token has expired, false otherwise
+     */
+    public boolean isExpired(long now) {
+        return expiresAt < now;
+    }
+}
@@ -5,6 +5,7 @@ import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.kenis.usermanager.domain.HttpResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.servlet.error.ErrorController;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -168,6 +169,58 @@ public class ExceptionHandling implements ErrorController {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
     }
 
+    /**
+     * The invalidRefreshTokenException() method handles the InvalidRefreshTokenException.
+     * This exception is thrown when a refresh token is unknown, expired, already used, or belongs to a user that can no longer log in.
+     * @param exception the exception thrown while consuming the refresh token
+     * @return ResponseEntity with a UNAUTHORIZED status code and the exception's message.
+     * @author Mohamed Ali KENIS
+     */
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<HttpResponse> invalidRefreshTokenException(InvalidRefreshTokenException exception) {
+        return createHttpResponse(UNAUTHORIZED, exception.getMessage());
+    }
+
+    /**
+     * The passwordEncoderOverloadedException() method handles the PasswordEncoderOverloadedException.
+     * This exception is thrown when every password worker is busy and no more password requests can be queued.
+     * @param exception the exception thrown by the password encoder, carrying the delay after which to retry
+     * @return ResponseEntity with a SERVICE_UNAVAILABLE status code, a Retry-After header and the exception's message.
+     * @author Mohamed Ali KENIS
+     */
+    @ExceptionHandler(PasswordEncoderOverloadedException.class)
+    public ResponseEntity<HttpResponse> passwordEncoderOverloadedException(PasswordEncoderOverloadedException exception) {
+        ResponseEntity<HttpResponse> response = createHttpResponse(SERVICE_UNAVAILABLE, exception.getMessage());
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
+    /**
+     * The userIdExistException() method handles the UserIdExistException.
+     * This exception is thrown when the user id generated for a new user collides with an existing one, because two nodes share a node id.
+     * @param exception the exception thrown when the new user was saved
+     * @return ResponseEntity with a CONFLICT status code and a message asking the client to try again.
+     * @author Mohamed Ali KENIS
+     */
+    @ExceptionHandler(UserIdExistException.class)
+    public ResponseEntity<HttpResponse> userIdExistException(UserIdExistException exception) {
+        log.error(exception.getMessage());
+        return createHttpResponse(CONFLICT, exception.getMessage());
+    }
+
+    /**
+     * The invalidRoleException() method handles the InvalidRoleException.
+     * This exception is thrown when a user is added or updated with a role that does not name a known role.
+     * @param exception the exception thrown while validating the user's fields
+     * @return ResponseEntity with a BAD_REQUEST status code and the exception's message.
+     * @author Mohamed Ali KENIS
+     */
+    @ExceptionHandler(InvalidRoleException.class)
+    public ResponseEntity<HttpResponse> invalidRoleException(InvalidRoleException exception) {
+        return createHttpResponse(BAD_REQUEST, exception.getMessage());
+    }
+
     @ExceptionHandler(BlankFieldException.class)
     public ResponseEntity<HttpResponse> BlankFieldException(BlankFieldException exception) {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
@@ -0,0 +1,18 @@
+package com.kenis.usermanager.exception.domain;
+
+/**
+ * Exception to be thrown when a refresh token is unknown, expired, already used, or belongs to a user that can no
+ * longer log in.
+ */
+public class InvalidRefreshTokenException extends Exception {
+
+    /**
+     * Constructs a new exception with the specified detail message.
+     *
+     * @param message the detail message. The detail message is saved for later
+     *                retrieval by the {@link #getMessage()} method.
+     */
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
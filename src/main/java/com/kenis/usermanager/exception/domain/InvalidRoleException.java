@@ -0,0 +1,17 @@
+package com.kenis.usermanager.exception.domain;
+
+/**
+ * Exception to be thrown when a user is added or updated with a role that does not name a known role.
+ */
+public class InvalidRoleException extends Exception {
+
+    /**
+     * Constructs a new exception with the specified detail message.
+     *
+     * @param message the detail message. The detail message is saved for later
+     *                retrieval by the {@link #getMessage()} method.
+     */
+    public InvalidRoleException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,32 @@
+package com.kenis.usermanager.exception.domain;
+
+/**
+ * Exception to be thrown when a password cannot be hashed or matched because every password worker is busy and the
+ * queue in front of them is full. It is unchecked because it is thrown through the
+ * {@link org.springframework.security.crypto.password.PasswordEncoder} interface.
+ */
+public class PasswordEncoderOverloadedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new exception with the specified detail message and the number of seconds after which the client
+     * should retry.
+     *
+     * @param message           the detail message. The detail message is saved for later
+     *                          retrieval by the {@link #getMessage()} method.
+     * @param retryAfterSeconds the number of seconds after which the client should retry
+     */
+    public PasswordEncoderOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns the number of seconds after which the client should retry.
+     *
+     * @return the number of seconds after which the client should retry
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,20 @@
+package com.kenis.usermanager.exception.domain;
+
+/**
+ * Exception thrown when the user id generated for a new user is already taken, which can only happen if two nodes
+ * share a {@code user.id.node-id}. It is unchecked because the request can simply be retried with a new id.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+public class UserIdExistException extends RuntimeException {
+
+    /**
+     * Constructs a new UserIdExistException with the specified message.
+     *
+     * @param message the detail message. The detail message is saved for later retrieval by the {@link #getMessage()} method.
+     */
+    public UserIdExistException(String message) {
+        super(message);
+    }
+}
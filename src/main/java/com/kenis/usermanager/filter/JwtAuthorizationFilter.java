@@ -1,10 +1,12 @@
 package com.kenis.usermanager.filter;
 
 
+import com.kenis.usermanager.domain.VerifiedToken;
+import com.kenis.usermanager.service.TokenEpochService;
+import com.kenis.usermanager.service.TokenRevocationService;
 import com.kenis.usermanager.utility.JWTTokenProvider;
 import org.springframework.lang.NonNull;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -14,7 +16,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.List;
 
 import static com.kenis.usermanager.constant.SecurityConstant.*;
 import static org.springframework.http.HttpHeaders.*;
@@ -31,18 +32,28 @@ import static org.springframework.http.HttpStatus.*;
 @Component
 public class JwtAuthorizationFilter extends OncePerRequestFilter {
     private final JWTTokenProvider jwtTokenProvider;
+    private final TokenRevocationService tokenRevocationService;
+    private final TokenEpochService tokenEpochService;
 
     /**
      * Creates a new instance of the JwtAuthorizationFilter class.
      *
      * @param jwtTokenProvider The JWT token provider.
+     * @param tokenRevocationService The service tracking revoked tokens.
+     * @param tokenEpochService The service tracking the token epoch of each user.
      */
-    public JwtAuthorizationFilter(JWTTokenProvider jwtTokenProvider) {
+    public JwtAuthorizationFilter(JWTTokenProvider jwtTokenProvider, TokenRevocationService tokenRevocationService,
+                                  TokenEpochService tokenEpochService) {
         this.jwtTokenProvider = jwtTokenProvider;
+        this.tokenRevocationService = tokenRevocationService;
+        this.tokenEpochService = tokenEpochService;
     }
 
     /**
      * Handles the request and response for the application.
+     * <p>
+     * Legacy tokens, accepted only while {@code jwt.legacy-tokens.enabled} is set, carry no user id and no token
+     * epoch, so they skip the epoch check; they are accepted for at most one legacy token lifetime after start-up.
      *
      * @param request The HTTP servlet request.
      * @param response The HTTP servlet response.
@@ -63,10 +74,14 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
                 return;
             }
             String token = authorizationHeader.substring(TOKEN_PREFIX.length());
-            String username = jwtTokenProvider.getSubject(token);
-            if (jwtTokenProvider.isTokenValid(username, token) && SecurityContextHolder.getContext().getAuthentication() == null) {
-                List<GrantedAuthority> authorities = jwtTokenProvider.getAuthorities(token);
-                Authentication authentication = jwtTokenProvider.getAuthentication(username, authorities, request);
+            VerifiedToken verifiedToken = jwtTokenProvider.verifyToken(token);
+            String username = verifiedToken.getSubject();
+            if (jwtTokenProvider.isTokenValid(username, verifiedToken)
+                    && !tokenRevocationService.isRevoked(verifiedToken.getTokenId())
+                    && (verifiedToken.isLegacy()
+                        || tokenEpochService.isCurrent(verifiedToken.getUserId(), verifiedToken.getTokenEpoch()))
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                Authentication authentication = jwtTokenProvider.getAuthentication(username, verifiedToken.getAuthorities(), request);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             } else {
                 SecurityContextHolder.clearContext();
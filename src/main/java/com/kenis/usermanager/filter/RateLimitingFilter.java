@@ -0,0 +1,311 @@
+package com.kenis.usermanager.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kenis.usermanager.domain.HttpResponse;
+import com.kenis.usermanager.utility.TokenBucketTable;
+import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.kenis.usermanager.constant.SecurityConstant.OPTIONS_HTTP_METHOD;
+import static com.kenis.usermanager.constant.SecurityConstant.REQUEST_BODY_TOO_LARGE_MESSAGE;
+import static com.kenis.usermanager.constant.SecurityConstant.TOO_MANY_REQUESTS_MESSAGE;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.PAYLOAD_TOO_LARGE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * This class represents a filter that throttles the public endpoints that are expensive to serve.
+ * <p>
+ * Logging in, registering and resetting a password all hash a password, and the last two also send an email. Each of
+ * these endpoints has two token buckets per client: one per client IP address and one per target identifier (the
+ * username or email the request is about), so that neither a single client nor many clients aiming at the same
+ * account can flood it. Behind a load balancer, the client IP address is the one the trusted proxy forwards, as
+ * resolved by the container with {@code server.forward-headers-strategy}, so clients do not share the bucket of the
+ * proxy. The limits are set per endpoint, in requests per minute ({@code rate-limit.*}). A request
+ * that finds a bucket empty is answered at once with a 429 and a {@code Retry-After} header, before any hashing or
+ * database access. The body of a throttled request is read at most once and only up to 16 KB; a larger body is
+ * rejected with a 413. Other requests are not affected.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+@Component
+public class RateLimitingFilter extends OncePerRequestFilter {
+    private static final long PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_BODY_SIZE = 16 * 1024;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean enabled;
+    private final TokenBucketTable buckets;
+    private final List<Rule> rules;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * The limits of one endpoint.
+     */
+    private static final class Rule {
+        private final String name;
+        private final String pattern;
+        private final int perIp;
+        private final int perIdentifier;
+        private final Function<CachedBodyRequest, String> identifier;
+
+        private Rule(String name, String pattern, int perIp, int perIdentifier,
+                     Function<CachedBodyRequest, String> identifier) {
+            this.name = name;
+            this.pattern = pattern;
+            this.perIp = perIp;
+            this.perIdentifier = perIdentifier;
+            this.identifier = identifier;
+        }
+    }
+
+    /**
+     * Creates a new instance of the RateLimitingFilter class.
+     *
+     * @param enabled                 Whether the public endpoints are throttled at all.
+     * @param maximumSize             The maximum number of token buckets kept in memory.
+     * @param loginPerIp              The login requests allowed per minute and client IP address.
+     * @param loginPerIdentifier      The login requests allowed per minute and username.
+     * @param registerPerIp           The registrations allowed per minute and client IP address.
+     * @param registerPerIdentifier   The registrations allowed per minute and username or email.
+     * @param resetPasswordPerIp      The password resets allowed per minute and client IP address.
+     * @param resetPasswordPerIdentifier The password resets allowed per minute and email.
+     * @param refreshPerIp            The token refreshes allowed per minute and client IP address.
+     */
+    public RateLimitingFilter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                              @Value("${rate-limit.maximum-size:100000}") int maximumSize,
+                              @Value("${rate-limit.login.per-ip:60}") int loginPerIp,
+                              @Value("${rate-limit.login.per-identifier:10}") int loginPerIdentifier,
+                              @Value("${rate-limit.register.per-ip:5}") int registerPerIp,
+                              @Value("${rate-limit.register.per-identifier:3}") int registerPerIdentifier,
+                              @Value("${rate-limit.reset-password.per-ip:5}") int resetPasswordPerIp,
+                              @Value("${rate-limit.reset-password.per-identifier:2}") int resetPasswordPerIdentifier,
+                              @Value("${rate-limit.token-refresh.per-ip:120}") int refreshPerIp) {
+        this.enabled = enabled;
+        this.buckets = new TokenBucketTable(maximumSize);
+        this.rules = List.of(
+                new Rule("login", "/user/login", loginPerIp, loginPerIdentifier,
+                        request -> request.getJsonField("username")),
+                new Rule("register", "/user/register", registerPerIp, registerPerIdentifier,
+                        request -> request.getJsonField("email")),
+                new Rule("reset-password", "/user/reset-password/**", resetPasswordPerIp, resetPasswordPerIdentifier,
+                        request -> request.getLastPathSegment()),
+                new Rule("token-refresh", "/user/token/refresh", refreshPerIp, 0, request -> null));
+    }
+
+    /**
+     * Returns true for the requests that are not throttled: preflight requests and requests to other endpoints.
+     *
+     * @param request The HTTP servlet request.
+     * @return true if the request is not throttled
+     */
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled || request.getMethod().equalsIgnoreCase(OPTIONS_HTTP_METHOD) || findRule(request) == null;
+    }
+
+    /**
+     * Takes a token from the buckets of the client IP address and of the target identifier, and rejects the request
+     * with a 429 if either is empty, or with a 413 if its body is too large to read the target identifier from.
+     *
+     * @param request The HTTP servlet request.
+     * @param response The HTTP servlet response.
+     * @param filterChain The filter chain.
+     * @throws ServletException If an error occurs while processing the request.
+     * @throws IOException If an error occurs while reading the request or writing the response.
+     */
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        Rule rule = findRule(request);
+        long now = System.currentTimeMillis();
+        long waitMillis = buckets.tryConsume(rule.name + "|ip|" + request.getRemoteAddr(), rule.perIp, PERIOD_MILLIS, now);
+        HttpServletRequest filteredRequest = request;
+        if (waitMillis == 0 && rule.perIdentifier > 0) {
+            CachedBodyRequest cachedBodyRequest = new CachedBodyRequest(request);
+            if (!cachedBodyRequest.readBody()) {
+                reject(response, PAYLOAD_TOO_LARGE, REQUEST_BODY_TOO_LARGE_MESSAGE, 0);
+                return;
+            }
+            String identifier = rule.identifier.apply(cachedBodyRequest);
+            if (identifier != null && !identifier.isBlank()) {
+                waitMillis = buckets.tryConsume(rule.name + "|id|" + identifier.trim().toLowerCase(Locale.ROOT),
+                        rule.perIdentifier, PERIOD_MILLIS, now);
+            }
+            filteredRequest = cachedBodyRequest;
+        }
+        if (waitMillis > 0) {
+            reject(response, TOO_MANY_REQUESTS, TOO_MANY_REQUESTS_MESSAGE, waitMillis);
+            return;
+        }
+        filterChain.doFilter(filteredRequest, response);
+    }
+
+    //= Private Methods ==
+
+    private Rule findRule(HttpServletRequest request) {
+        String path = request.getServletPath();
+        for (Rule rule : rules) {
+            if (pathMatcher.match(rule.pattern, path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Answers the request with the given status and, if the client has to wait, the number of seconds after which it
+     * may retry.
+     *
+     * @param response   The HTTP servlet response.
+     * @param httpStatus The status of the response.
+     * @param message    The message of the response.
+     * @param waitMillis The time until a token is available, in milliseconds, or 0.
+     * @throws IOException If an error occurs while writing the response.
+     */
+    private void reject(HttpServletResponse response, HttpStatus httpStatus, String message, long waitMillis)
+            throws IOException {
+        HttpResponse httpResponse = new HttpResponse(
+                httpStatus.value(),
+                httpStatus,
+                httpStatus.getReasonPhrase().toUpperCase(),
+                message.toUpperCase()
+        );
+        response.setStatus(httpStatus.value());
+        if (waitMillis > 0) {
+            response.setHeader(RETRY_AFTER, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999)));
+        }
+        response.setContentType(APPLICATION_JSON_VALUE);
+        MAPPER.writeValue(response.getOutputStream(), httpResponse);
+    }
+
+    /**
+     * A request whose body is read once, so the target identifier can be taken from it and the body still be read by
+     * the controller.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        /**
+         * Returns the given top-level field of the JSON body, or null if the body is not a JSON object holding it.
+         */
+        private String getJsonField(String field) {
+            try {
+                byte[] content = body;
+                if (content == null || content.length == 0) {
+                    return null;
+                }
+                JsonNode value = MAPPER.readTree(content).get(field);
+                return value == null || !value.isTextual() ? null : value.asText();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private String getLastPathSegment() {
+            String path = getServletPath();
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * Reads the body, whether or not its length was declared, but never more than one byte past the limit.
+         *
+         * @return true if the body was read, false if it is larger than the limit
+         */
+        private boolean readBody() throws IOException {
+            if (getContentLengthLong() > MAX_BODY_SIZE) {
+                return false;
+            }
+            byte[] content = super.getInputStream().readNBytes(MAX_BODY_SIZE + 1);
+            if (content.length > MAX_BODY_SIZE) {
+                return false;
+            }
+            body = content;
+            return true;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (body == null) {
+                return super.getInputStream();
+            }
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /**
+                 * Notifies the listener at once, since the whole body is already in memory: it is told that data is
+                 * available, unless the body is empty, and then that all data has been read once it has read it.
+                 */
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    return inputStream.read(bytes, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (body == null) {
+                return super.getReader();
+            }
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.kenis.usermanager.repository;
+
+import com.kenis.usermanager.domain.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * The {@code RefreshTokenRepository} interface is a Spring Data JPA repository for {@link RefreshToken} entities.
+ *
+ * @author Mohamed Ali Kenis
+ * @see RefreshToken
+ */
+@Transactional
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    RefreshToken findRefreshTokenByTokenHash(String tokenHash);
+
+    /**
+     * Deletes the refresh token with the given id. Returns 0 if another request already consumed it.
+     *
+     * @param id the id of the refresh token
+     * @return the number of deleted refresh tokens
+     */
+    @Modifying
+    @Query("delete from RefreshToken r where r.id = :id")
+    int deleteRefreshTokenById(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from RefreshToken r where r.expiresAt < :date")
+    int deleteRefreshTokensExpiredBefore(@Param("date") Date date);
+
+    @Modifying
+    @Query("delete from RefreshToken r where r.userId = :userId")
+    int deleteRefreshTokensByUserId(@Param("userId") Long userId);
+}
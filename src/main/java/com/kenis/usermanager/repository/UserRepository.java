@@ -1,9 +1,17 @@
 package com.kenis.usermanager.repository;
 
 import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserIdentity;
+import com.kenis.usermanager.domain.UserSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 /**
 *
  *The {@code UserRepository} interface is a Spring Data JPA repository for {@link User} entities. It provides
@@ -17,11 +25,57 @@ import org.springframework.transaction.annotation.Transactional;
 *
  *@see User
  */
-@Transactional
-public interface UserRepository extends JpaRepository<User, Long> {
+@Transactional(readOnly = true)
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     User findUserByUsername(String username);
     User findUserByEmail(String email);
     User findUserByUserId(String userId);
     User findUserById(Long id);
+
+    /**
+     * Returns the id, username and email of every user holding one of the given usernames or the given email, in a
+     * single query. Null arguments match no user.
+     *
+     * @param currentUsername the current username of the user being updated, or null
+     * @param newUsername     the username to check, or null
+     * @param newEmail        the email address to check, or null
+     * @return the matching users
+     */
+    @Query("select u.id as id, u.username as username, u.email as email from User u " +
+            "where u.username = :currentUsername or u.username = :newUsername or u.email = :newEmail")
+    List<UserIdentity> findUserIdentities(@Param("currentUsername") String currentUsername,
+                                          @Param("newUsername") String newUsername,
+                                          @Param("newEmail") String newEmail);
+
+    /**
+     * Returns the summaries of the users, in id order, without loading the user entities.
+     *
+     * @param pageable the page to return
+     * @return the summaries of the users of the page
+     */
+    @Query("select new com.kenis.usermanager.domain.UserSummary(u.id, u.userId, u.firstName, u.lastName, u.username, " +
+            "u.email, u.profileImageUrl, u.lastLoginDate, u.lastLoginDateDisplay, u.joinDate, u.role, u.isActive, " +
+            "u.isNotLocked) from User u order by u.id")
+    List<UserSummary> findUserSummaries(Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.isNotLocked = :isNotLocked where u.id = :id")
+    int updateIsNotLocked(@Param("id") Long id, @Param("isNotLocked") Boolean isNotLocked);
+
+    /**
+     * Replaces the password hash of the given user, only if it is still the given current hash.
+     *
+     * @param username        the username of the user
+     * @param currentPassword the password hash expected to be stored
+     * @param newPassword     the new password hash
+     * @return the number of updated users
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :newPassword where u.username = :username and u.password = :currentPassword")
+    int updatePassword(@Param("username") String username,
+                       @Param("currentPassword") String currentPassword,
+                       @Param("newPassword") String newPassword);
 }
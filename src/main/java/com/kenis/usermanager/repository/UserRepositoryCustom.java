@@ -0,0 +1,25 @@
+package com.kenis.usermanager.repository;
+
+import com.kenis.usermanager.domain.UserFilter;
+import com.kenis.usermanager.domain.UserSummary;
+
+import java.util.List;
+
+/**
+ * Custom queries of the {@link UserRepository}, implemented by {@link UserRepositoryImpl}.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Returns the summaries of at most {@code limit} users matching the given filter whose id is greater than
+     * {@code afterId}, in id order.
+     *
+     * @param afterId the id after which to start, or null to start from the first user
+     * @param filter  the filter the users must match
+     * @param limit   the maximum number of users to return
+     * @return the summaries of the matching users, in id order
+     */
+    List<UserSummary> findUsersAfter(Long afterId, UserFilter filter, int limit);
+}
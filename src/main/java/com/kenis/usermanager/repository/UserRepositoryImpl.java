@@ -0,0 +1,85 @@
+package com.kenis.usermanager.repository;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserFilter;
+import com.kenis.usermanager.domain.UserSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Implementation of the {@link UserRepositoryCustom} queries.
+ * <p>
+ * The user list is paginated on the id (keyset pagination): each page starts with {@code id > :afterId}, which the
+ * primary key index resolves directly, instead of skipping an offset that grows with every page. The prefix filter
+ * matches {@code lower(username)} and {@code lower(email)}, as indexed by the {@code V3} migration. Only the columns
+ * of a {@link UserSummary} are selected.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    private static final char LIKE_ESCAPE = '\\';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserSummary> findUsersAfter(Long afterId, UserFilter filter, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserSummary> query = builder.createQuery(UserSummary.class);
+        Root<User> user = query.from(User.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (afterId != null) {
+            predicates.add(builder.greaterThan(user.get("id"), afterId));
+        }
+        if (filter.getRole() != null) {
+            predicates.add(builder.equal(user.get("role"), filter.getRole()));
+        }
+        if (filter.getIsActive() != null) {
+            predicates.add(builder.equal(user.get("isActive"), filter.getIsActive()));
+        }
+        if (filter.getIsNotLocked() != null) {
+            predicates.add(builder.equal(user.get("isNotLocked"), filter.getIsNotLocked()));
+        }
+        if (filter.getPrefix() != null && !filter.getPrefix().isBlank()) {
+            String pattern = escapeLike(filter.getPrefix().trim().toLowerCase(Locale.ROOT)) + "%";
+            predicates.add(builder.or(
+                    builder.like(builder.lower(user.get("username")), pattern, LIKE_ESCAPE),
+                    builder.like(builder.lower(user.get("email")), pattern, LIKE_ESCAPE)));
+        }
+        query.select(builder.construct(UserSummary.class, user.get("id"), user.get("userId"), user.get("firstName"),
+                        user.get("lastName"), user.get("username"), user.get("email"), user.get("profileImageUrl"),
+                        user.get("lastLoginDate"), user.get("lastLoginDateDisplay"), user.get("joinDate"),
+                        user.get("role"), user.get("isActive"), user.get("isNotLocked")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(user.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Escapes the characters of the given value that have a special meaning in a LIKE pattern.
+     *
+     * @param value the value to escape
+     * @return the escaped value
+     */
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -2,12 +2,22 @@ package com.kenis.usermanager.resource;
 
 
 import com.kenis.usermanager.domain.HttpResponse;
+import com.kenis.usermanager.domain.LoginResponse;
 import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserFilter;
+import com.kenis.usermanager.domain.UserPage;
 import com.kenis.usermanager.domain.UserPrincipal;
+import com.kenis.usermanager.domain.UserSummary;
+import com.kenis.usermanager.domain.VerifiedToken;
 import com.kenis.usermanager.exception.domain.*;
+import com.kenis.usermanager.service.RefreshTokenService;
+import com.kenis.usermanager.service.TokenRevocationService;
+import com.kenis.usermanager.service.UserExportService;
 import com.kenis.usermanager.service.UserService;
+import com.kenis.usermanager.utility.BoundedPasswordEncoder;
 import com.kenis.usermanager.utility.FieldsValidations;
 import com.kenis.usermanager.utility.JWTTokenProvider;
+import com.kenis.usermanager.utility.JwtKeyRing;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -16,10 +26,17 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.mail.MessagingException;
+import javax.servlet.http.HttpServletRequest;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -28,9 +45,12 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import static com.kenis.usermanager.constant.FileConstant.*;
-import static com.kenis.usermanager.constant.SecurityConstant.JWT_TOKEN_HEADER;
+import static com.kenis.usermanager.constant.SecurityConstant.*;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 
@@ -46,43 +66,119 @@ import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 public class UserResource extends ExceptionHandling {
     public static final String PASSWORD_EMAIL_SEND_TO = "An email with new password was send to ";
     public static final String DELETED_SUCCESSFULLY_USER_ID = "The user was deleted successfully, user id: ";
+    public static final String TOKEN_REFRESHED = "A new access token was issued";
+    public static final String LOGGED_OUT_SUCCESSFULLY = "You have been logged out successfully";
+    public static final String TOKEN_REVOKED_SUCCESSFULLY = "The token was revoked successfully, token id: ";
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    public static final String CSV_CONTENT_TYPE = "text/csv; charset=UTF-8";
+    private static final String EXPORT_TIMEOUT_INTERCEPTOR = UserResource.class.getName() + ".EXPORT_TIMEOUT";
     private final UserService userService;
     private final FieldsValidations validations;
     private final AuthenticationManager authenticationManager;
     private final JWTTokenProvider jwtTokenProvider;
+    private final JwtKeyRing keyRing;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final UserExportService userExportService;
 
     /**
      * Constructs a new UserResource instance with the given user service,
-     * authentication manager, and JWT token provider.
+     * authentication manager, JWT token provider, JWT key ring, refresh token service, token revocation service,
+     * password encoder and user export service.
      *
      * @param userService           the user service
      * @param validations           the validation
      * @param authenticationManager the authentication manager
      * @param jwtTokenProvider      the JWT token provider
+     * @param keyRing               the ring of keys used to sign the JWT tokens
+     * @param refreshTokenService   the refresh token service
+     * @param tokenRevocationService the token revocation service
+     * @param passwordEncoder       the password encoder, calibrated on demand
+     * @param userExportService     the service streaming every user for exports
      */
     @Autowired
     public UserResource(UserService userService, FieldsValidations validations, AuthenticationManager authenticationManager,
-                        JWTTokenProvider jwtTokenProvider) {
+                        JWTTokenProvider jwtTokenProvider, JwtKeyRing keyRing, RefreshTokenService refreshTokenService,
+                        TokenRevocationService tokenRevocationService, BoundedPasswordEncoder passwordEncoder,
+                        UserExportService userExportService) {
         this.userService = userService;
         this.validations = validations;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.keyRing = keyRing;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.passwordEncoder = passwordEncoder;
+        this.userExportService = userExportService;
     }
 
     /**
-     * Handles a login request and returns the user's information and a JWT token in the response header.
+     * Handles a login request and returns the user's information, a short-lived JWT token and a refresh token in the
+     * response headers.
      *
      * @param user the user's login credentials
-     * @return the user's information and a JWT token in the response header
+     * @return the user's information and a JWT token and a refresh token in the response headers
      */
     @PostMapping("/login")
-    public ResponseEntity<User> login(@RequestBody User user) throws BlankFieldException {
+    public ResponseEntity<LoginResponse> login(@RequestBody User user) throws BlankFieldException {
         validations.validateFieldsLogin(user.getUsername(),user.getPassword());
-        authenticate(user.getUsername(), user.getPassword());
-        User loginUser = userService.findUserByUsername(user.getUsername());
-        UserPrincipal userPrincipal = new UserPrincipal(loginUser);
+        UserPrincipal userPrincipal = authenticate(user.getUsername(), user.getPassword());
         HttpHeaders jwtHeaders = getJwtHeader(userPrincipal);
-        return new ResponseEntity<>(loginUser, jwtHeaders, OK);
+        return new ResponseEntity<>(new LoginResponse(userPrincipal), jwtHeaders, OK);
+    }
+
+    /**
+     * Handles a request to exchange a refresh token for a new JWT token without checking the password again.
+     * The refresh token is consumed and a new one is returned next to the new JWT token.
+     *
+     * @param refreshToken the refresh token issued at login or by the previous refresh
+     * @return a response with a status of OK, and a JWT token and a refresh token in the response headers
+     * @throws InvalidRefreshTokenException if the refresh token is unknown, expired or already used
+     */
+    @PostMapping("/token/refresh")
+    public ResponseEntity<HttpResponse> refreshToken(@RequestHeader(REFRESH_TOKEN_HEADER) String refreshToken)
+            throws InvalidRefreshTokenException {
+        User user = refreshTokenService.consumeRefreshToken(refreshToken);
+        HttpResponse httpResponse = new HttpResponse(OK.value(), OK, OK.getReasonPhrase().toUpperCase(),
+                TOKEN_REFRESHED.toUpperCase());
+        return new ResponseEntity<>(httpResponse, getJwtHeader(user), OK);
+    }
+
+    /**
+     * Handles a logout request. The JWT token the request was made with is revoked, and so is the refresh token if one
+     * is sent.
+     *
+     * @param authorizationHeader the "Authorization" header holding the JWT token to revoke
+     * @param refreshToken        the refresh token to revoke (optional)
+     * @return a response with a status of OK and a message indicating that the user was logged out
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<HttpResponse> logout(@RequestHeader(AUTHORIZATION) String authorizationHeader,
+                                               @RequestHeader(value = REFRESH_TOKEN_HEADER, required = false) String refreshToken) {
+        VerifiedToken verifiedToken = jwtTokenProvider.verifyToken(authorizationHeader.substring(TOKEN_PREFIX.length()));
+        if (verifiedToken.getTokenId() != null) {
+            tokenRevocationService.revoke(verifiedToken.getTokenId(), verifiedToken.getExpiresAt());
+        }
+        if (refreshToken != null) {
+            refreshTokenService.revokeRefreshToken(refreshToken);
+        }
+        return response(OK, LOGGED_OUT_SUCCESSFULLY);
+    }
+
+    /**
+     * Handles a request to revoke the JWT token with the given id before it expires.
+     *<br>
+     *the preAuthorize the user making the request must have the 'user:delete' authority, checked against the
+     *bitmask of their authorities by the {@link com.kenis.usermanager.utility.AuthorityChecker}
+     * @param tokenId the id of the token to revoke, as found in its 'jti' claim
+     * @return a response with a status of OK and a message indicating that the token was revoked
+     */
+    @PostMapping("/token/revoke/{tokenId}")
+    @PreAuthorize("@authorityChecker.hasAuthority('user:delete')")
+    public ResponseEntity<HttpResponse> revokeToken(@PathVariable("tokenId") String tokenId) {
+        tokenRevocationService.revoke(tokenId, System.currentTimeMillis() + EXPIRATION_TIM);
+        return response(OK, TOKEN_REVOKED_SUCCESSFULLY + tokenId);
     }
 
     /**
@@ -118,6 +214,7 @@ public class UserResource extends ExceptionHandling {
      * @throws EmailExistException if the email address is already in use
      * @throws IOException if an error occurs while reading or writing the user's profile image
      * @throws UsernameExistException if the username is already in use
+     * @throws InvalidRoleException if the role is not a known role
      */
     @PostMapping("/add")
     public ResponseEntity<User> addNewUser(
@@ -129,7 +226,7 @@ public class UserResource extends ExceptionHandling {
             @RequestParam("isActive") String isActive,
             @RequestParam("isNotLock") String isNotLock,
             @RequestParam(value = "profileImage", required = false) MultipartFile profileImage
-    ) throws UserNotFoundException, EmailExistException, IOException, UsernameExistException, BlankFieldException {
+    ) throws UserNotFoundException, EmailExistException, IOException, UsernameExistException, BlankFieldException, InvalidRoleException {
         User user = userService.addNewUser(firstName, lastName, username, email, role,
                 Boolean.parseBoolean(isNotLock), Boolean.parseBoolean(isActive), profileImage);
         return new ResponseEntity<>(user, OK);
@@ -152,6 +249,7 @@ public class UserResource extends ExceptionHandling {
      * @throws EmailExistException if the new email address is already in use
      * @throws IOException if an error occurs while reading or writing the user's profile image
      * @throws UsernameExistException if the new username is already in use
+     * @throws InvalidRoleException if the new role is not a known role
      */
     @PostMapping("/update")
     public ResponseEntity<User> updateUser(
@@ -164,7 +262,7 @@ public class UserResource extends ExceptionHandling {
             @RequestParam("isNotLock") String isNotLock,
             @RequestParam("isActive") String isActive,
             @RequestParam(value = "profileImage", required = false) MultipartFile profileImage
-    ) throws UserNotFoundException, EmailExistException, IOException, UsernameExistException, BlankFieldException {
+    ) throws UserNotFoundException, EmailExistException, IOException, UsernameExistException, BlankFieldException, InvalidRoleException {
         User updatedUser = userService.updateUser(
                 currentUsername, newFirstName, newLastName, newUsername, newEmail, role,
                 Boolean.parseBoolean(isNotLock), Boolean.parseBoolean(isActive),profileImage);
@@ -172,16 +270,70 @@ public class UserResource extends ExceptionHandling {
     }
 
     /**
-     * Handles a request to retrieve a list of all users.
+     * Handles a request to retrieve a list of the users, capped by the server. Use {@code /page} to page through all
+     * of them.
      *
-     * @return a list of all users and a status of OK
+     * @return a list of the users and a status of OK
      */
     @GetMapping("/list")
-    public ResponseEntity<List<User>> getAllUsers(){
-        List<User> users = userService.getUsers();
+    public ResponseEntity<List<UserSummary>> getAllUsers(){
+        List<UserSummary> users = userService.getUsers();
         return new ResponseEntity<>(users,OK);
     }
 
+    /**
+     * Handles a request to retrieve one page of the users, in id order, optionally filtered.
+     *
+     * @param after    the cursor returned with the previous page (optional, the first page if missing)
+     * @param size     the page size (optional, 20 by default, capped by the server)
+     * @param role     the role of the users, e.g. ROLE_USER (optional)
+     * @param active   whether the users are active (optional)
+     * @param locked   whether the users are locked (optional)
+     * @param prefix   a case-insensitive prefix of the username or email of the users (optional)
+     * @return the page of users, with the cursor of the next page, and a status of OK
+     */
+    @GetMapping("/page")
+    public ResponseEntity<UserPage<UserSummary>> getUserPage(@RequestParam(value = "after", required = false) Long after,
+                                                            @RequestParam(value = "size", defaultValue = "20") int size,
+                                                            @RequestParam(value = "role", required = false) String role,
+                                                            @RequestParam(value = "active", required = false) Boolean active,
+                                                            @RequestParam(value = "locked", required = false) Boolean locked,
+                                                            @RequestParam(value = "prefix", required = false) String prefix) {
+        UserFilter filter = new UserFilter(role, active, locked == null ? null : !locked, prefix);
+        return new ResponseEntity<>(userService.getUsers(after, size, filter), OK);
+    }
+
+    /**
+     * Handles a request to export every user, streamed row by row so that the export does not have to fit in memory.
+     * The request is given the export timeout ({@code user.export.timeout}) instead of the default async timeout.
+     *<br>
+     *the preAuthorize the user making the request must have the 'user:delete' authority
+     * @param format  the format of the export, {@code ndjson} (the default) or {@code csv}
+     * @param request the HTTP request, whose async timeout is raised for the export
+     * @return the users, one per line, and a status of OK
+     */
+    @GetMapping("/export")
+    @PreAuthorize("@authorityChecker.hasAuthority('user:delete')")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                             HttpServletRequest request) {
+        long timeoutMillis = userExportService.getTimeoutMillis();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(EXPORT_TIMEOUT_INTERCEPTOR,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        ((AsyncWebRequest) webRequest).setTimeout(timeoutMillis);
+                    }
+                });
+        UserExportService.Format exportFormat = "csv".equalsIgnoreCase(format)
+                ? UserExportService.Format.CSV : UserExportService.Format.NDJSON;
+        StreamingResponseBody body = outputStream -> userExportService.exportUsers(outputStream, exportFormat);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, exportFormat == UserExportService.Format.CSV
+                        ? CSV_CONTENT_TYPE : NDJSON_CONTENT_TYPE)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
+    }
+
     /**
      * Handles a request to reset a user's password.
      *
@@ -206,7 +358,7 @@ public class UserResource extends ExceptionHandling {
      *
      */
     @DeleteMapping("delete/{id}")
-    @PreAuthorize("hasAuthority('user:delete')")
+    @PreAuthorize("@authorityChecker.hasAuthority('user:delete')")
     public ResponseEntity<HttpResponse> deletedUser(@PathVariable("id") Long id) {
         userService.deleteUser(id);
         return response(NO_CONTENT, DELETED_SUCCESSFULLY_USER_ID + id);
@@ -219,8 +371,8 @@ public class UserResource extends ExceptionHandling {
      * @return the user with the given username and a status of OK
      */
     @GetMapping("/find/{username}")
-    public ResponseEntity<User> getUser(@PathVariable("username") String username) throws UserNotFoundException, BlankFieldException {
-        User user = userService.getUser(username);
+    public ResponseEntity<UserSummary> getUser(@PathVariable("username") String username) throws UserNotFoundException, BlankFieldException {
+        UserSummary user = userService.getUser(username);
         return new ResponseEntity<>(user,OK);
     }
 
@@ -281,29 +433,84 @@ public class UserResource extends ExceptionHandling {
         return new ResponseEntity<>(user, OK);
     }
 
+    /**
+     * Handles a request to retrieve the public keys that JWT tokens are signed with, as a JSON Web Key Set.
+     * Other services use these keys to verify our tokens locally.
+     *
+     * @return the public signing keys and a status of OK
+     */
+    @GetMapping("/keys")
+    public ResponseEntity<Map<String, Object>> getSigningKeys() {
+        return new ResponseEntity<>(keyRing.getJsonWebKeys(), OK);
+    }
+
+    /**
+     * Handles a request to rotate the JWT signing key on this node: the shared key directory is read again, or a new
+     * key is generated if none is configured. Tokens signed with the previous key stay valid until the grace period
+     * has elapsed.
+     *<br>
+     *the preAuthorize the user making the request must have the 'user:delete' authority
+     * @return the public signing keys, including the new one, and a status of OK
+     * @throws IOException if the key directory cannot be read
+     */
+    @PostMapping("/keys/rotate")
+    @PreAuthorize("@authorityChecker.hasAuthority('user:delete')")
+    public ResponseEntity<Map<String, Object>> rotateSigningKey() throws IOException {
+        keyRing.rotate();
+        return new ResponseEntity<>(keyRing.getJsonWebKeys(), OK);
+    }
+
+    /**
+     * Handles a request to calibrate the bcrypt cost factor on this host. New passwords are hashed with the new cost,
+     * and stored hashes of a weaker cost are rehashed when their users next log in.
+     *<br>
+     *the preAuthorize the user making the request must have the 'user:delete' authority
+     * @return a response with a status of OK and the new bcrypt cost factor
+     */
+    @PostMapping("/password-encoder/calibrate")
+    @PreAuthorize("@authorityChecker.hasAuthority('user:delete')")
+    public ResponseEntity<HttpResponse> calibratePasswordEncoder() {
+        int strength = passwordEncoder.calibrate();
+        return response(OK, PASSWORD_ENCODER_CALIBRATED + strength);
+    }
+
     //= Private Methods ==
 
     /**
-     * Returns an HttpHeaders object with a JWT token in the "Authorization" header.
+     * Returns an HttpHeaders object with a JWT token in the "Jwt-Token" header and a new refresh token in the
+     * "Refresh-Token" header.
+     *
+     * @param user the user to issue the tokens for
+     * @return an HttpHeaders object with a JWT token and a refresh token
+     */
+    private HttpHeaders getJwtHeader(User user) {
+        return getJwtHeader(new UserPrincipal(user));
+    }
+
+    /**
+     * Returns an HttpHeaders object with a JWT token and a new refresh token issued for the given principal.
      *
-     * @param userPrincipal the user principal
-     * @return an HttpHeaders object with a JWT token in the "Authorization" header
+     * @param userPrincipal the principal of the user to issue the tokens for
+     * @return an HttpHeaders object with a JWT token and a refresh token
      */
     private HttpHeaders getJwtHeader(UserPrincipal userPrincipal) {
         HttpHeaders headers = new HttpHeaders();
         headers.add(JWT_TOKEN_HEADER, jwtTokenProvider.generateJwtToken(userPrincipal));
+        headers.add(REFRESH_TOKEN_HEADER, refreshTokenService.issueRefreshToken(userPrincipal.getUser()));
         return headers;
     }
 
     /**
-     * Authenticates the user with the given username and password.
+     * Authenticates the user with the given username and password and returns the principal loaded while doing so.
      *
      * @param userName the username
      * @param password the password
+     * @return the principal of the authenticated user
      */
-    private void authenticate(String userName, String password) {
-        authenticationManager.authenticate(
+    private UserPrincipal authenticate(String userName, String password) {
+        Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(userName, password));
+        return (UserPrincipal) authentication.getPrincipal();
     }
 
     /**
@@ -0,0 +1,59 @@
+package com.kenis.usermanager.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * <h3> Login attempt store local to this node.
+ *
+ * <p> The attempts are counted by a {@link LoginAttemptTracker}, bounded by {@code login.attempts.memory-budget}.
+ * This is the default store, suited to a single instance.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Service
+@ConditionalOnProperty(name = "login.attempts.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+    private final LoginAttemptTracker loginAttemptTracker;
+
+    /**
+     * Constructs a new {@code InMemoryLoginAttemptStore} counting the login attempts over the given window.
+     *
+     * @param memoryBudget the maximum memory used to count the attempts, in bytes
+     * @param windowMillis the length of the sliding window, in milliseconds
+     * @param buckets      the number of buckets the window is split into
+     */
+    public InMemoryLoginAttemptStore(@Value("${login.attempts.memory-budget:16777216}") long memoryBudget,
+                                     @Value("${login.attempts.window:900000}") long windowMillis,
+                                     @Value("${login.attempts.buckets:15}") int buckets) {
+        this.loginAttemptTracker = new LoginAttemptTracker(memoryBudget, windowMillis, buckets, System::currentTimeMillis);
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public void recordAttempt(String username) {
+        loginAttemptTracker.recordAttempt(username);
+    }
+
+    @Override
+    public void recordAttempts(Map<String, Integer> attemptsByUsername) {
+        attemptsByUsername.forEach(loginAttemptTracker::recordAttempts);
+    }
+
+    @Override
+    public int getAttempts(String username) {
+        return loginAttemptTracker.getAttempts(username);
+    }
+
+    @Override
+    public void reset(String username) {
+        loginAttemptTracker.reset(username);
+    }
+}
@@ -0,0 +1,104 @@
+package com.kenis.usermanager.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.kenis.usermanager.constant.SecurityConstant.EXPIRED_LOGIN_ATTEMPTS_DELETED;
+
+/**
+ * <h3> Login attempt store shared by every node through the database.
+ *
+ * <p> The attempts are counted per username and per time bucket in the {@code login_attempt} table. New attempts are
+ * added with a PostgreSQL upsert ({@code insert ... on conflict do update}), so concurrent nodes never overwrite each
+ * other's counts, and the attempts of a username are the sum of its buckets within the window. Buckets that have left
+ * the window are deleted on a schedule.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "login.attempts.store", havingValue = "jdbc")
+public class JdbcLoginAttemptStore implements LoginAttemptStore {
+    private static final String UPSERT_ATTEMPTS =
+            "insert into login_attempt (username, bucket, attempts) values (?, ?, ?) " +
+            "on conflict (username, bucket) do update set attempts = login_attempt.attempts + excluded.attempts";
+    private static final String SELECT_ATTEMPTS =
+            "select coalesce(sum(attempts), 0) from login_attempt where username = ? and bucket > ?";
+    private static final String DELETE_ATTEMPTS = "delete from login_attempt where username = ?";
+    private static final String DELETE_EXPIRED_ATTEMPTS = "delete from login_attempt where bucket <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long bucketMillis;
+
+    private final int buckets;
+
+    /**
+     * Constructs a new {@code JdbcLoginAttemptStore} counting the login attempts over the given window.
+     *
+     * @param jdbcTemplate the JDBC template the attempts are read and written with
+     * @param windowMillis the length of the sliding window, in milliseconds
+     * @param buckets      the number of buckets the window is split into
+     */
+    public JdbcLoginAttemptStore(JdbcTemplate jdbcTemplate,
+                                 @Value("${login.attempts.window:900000}") long windowMillis,
+                                 @Value("${login.attempts.buckets:15}") int buckets) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bucketMillis = windowMillis / buckets;
+        this.buckets = buckets;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    @Override
+    public void recordAttempt(String username) {
+        recordAttempts(Map.of(username, 1));
+    }
+
+    @Override
+    public void recordAttempts(Map<String, Integer> attemptsByUsername) {
+        long bucket = currentBucket();
+        List<Object[]> batch = new ArrayList<>(attemptsByUsername.size());
+        attemptsByUsername.forEach((username, attempts) -> batch.add(new Object[]{username, bucket, attempts}));
+        jdbcTemplate.batchUpdate(UPSERT_ATTEMPTS, batch);
+    }
+
+    @Override
+    public int getAttempts(String username) {
+        Integer attempts = jdbcTemplate.queryForObject(SELECT_ATTEMPTS, Integer.class, username, currentBucket() - buckets);
+        return attempts == null ? 0 : attempts;
+    }
+
+    @Override
+    public void reset(String username) {
+        jdbcTemplate.update(DELETE_ATTEMPTS, username);
+    }
+
+    /**
+     * Deletes the buckets that have left the window.
+     */
+    @Scheduled(fixedDelayString = "${login.attempts.prune-interval:60000}")
+    public void deleteExpiredAttempts() {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED_ATTEMPTS, currentBucket() - buckets);
+        if (deleted > 0) {
+            log.info(EXPIRED_LOGIN_ATTEMPTS_DELETED + deleted);
+        }
+    }
+
+    //= Private Methods ==
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / bucketMillis;
+    }
+}
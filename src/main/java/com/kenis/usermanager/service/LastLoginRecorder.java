@@ -0,0 +1,160 @@
+package com.kenis.usermanager.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.kenis.usermanager.constant.UserImpConstant.LAST_LOGIN_DATES_FLUSHED;
+
+/**
+ * <h3> Write-behind buffer for the last login dates of users.
+ *
+ * <p> Recording the last login date used to save the whole user on every login. Instead, each login is recorded here,
+ * in memory, and the buffer is flushed to the database on a schedule ({@code user.last-login.flush-interval}) as a
+ * single batched JDBC update. Several logins of the same user between two flushes are coalesced into one row update.
+ *
+ * <p> Pending dates only leave the buffer once the batch holding them has been written, and only if no newer login of
+ * the same user replaced them meanwhile, so a failed batch is retried with the next flush.
+ *
+ * <p> The buffer is bounded ({@code user.last-login.max-pending}): the login that finds it full starts a flush in the
+ * background rather than writing on the login thread. While that flush runs, the buffer may hold up to twice the
+ * bound; past that, for instance while the database is down, the logins of users not in the buffer yet are not
+ * recorded. It is also flushed when the application shuts down.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+public class LastLoginRecorder {
+    private static final String UPDATE_LAST_LOGIN_DATES =
+            "update user_details set last_login_date = ?, last_login_date_display = ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int maxPending;
+
+    /**
+     * The pending last login dates, by user id.
+     */
+    private final Map<Long, LastLogin> pendingLogins = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the flushes started by a full buffer, off the login threads.
+     */
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "last-login-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Whether a flush started by a full buffer is queued or running.
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * The last login date of a user and the login date before it, to be displayed.
+     */
+    private static final class LastLogin {
+        private final Date lastLoginDate;
+        private final Date lastLoginDateDisplay;
+
+        private LastLogin(Date lastLoginDate, Date lastLoginDateDisplay) {
+            this.lastLoginDate = lastLoginDate;
+            this.lastLoginDateDisplay = lastLoginDateDisplay;
+        }
+    }
+
+    /**
+     * Constructs a new {@code LastLoginRecorder}.
+     *
+     * @param jdbcTemplate the JDBC template the batched updates are run with
+     * @param maxPending   the maximum number of users whose last login date can be pending
+     */
+    @Autowired
+    public LastLoginRecorder(JdbcTemplate jdbcTemplate, @Value("${user.last-login.max-pending:10000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Records a login of the user with the given id. The login date is written to the database on the next flush.
+     *
+     * @param userId            the id of the user
+     * @param previousLoginDate the last login date of the user before this login, to be displayed
+     * @param loginDate         the date of this login
+     */
+    public void recordLogin(Long userId, Date previousLoginDate, Date loginDate) {
+        if (pendingLogins.size() >= maxPending && !pendingLogins.containsKey(userId)) {
+            requestFlush();
+            if (pendingLogins.size() >= 2 * maxPending) {
+                return;
+            }
+        }
+        pendingLogins.merge(userId, new LastLogin(loginDate, previousLoginDate),
+                (pending, login) -> new LastLogin(login.lastLoginDate, pending.lastLoginDate));
+    }
+
+    /**
+     * Writes every pending last login date to the database in one batched update. The written dates are only taken
+     * off the buffer once the update has succeeded, and only if they have not been replaced by a newer login.
+     */
+    @Scheduled(fixedDelayString = "${user.last-login.flush-interval:5000}")
+    public synchronized void flush() {
+        if (pendingLogins.isEmpty()) {
+            return;
+        }
+        Map<Long, LastLogin> written = new HashMap<>(pendingLogins);
+        List<Object[]> batch = new ArrayList<>(written.size());
+        written.forEach((userId, lastLogin) -> batch.add(new Object[]{
+                new Timestamp(lastLogin.lastLoginDate.getTime()),
+                lastLogin.lastLoginDateDisplay == null ? null : new Timestamp(lastLogin.lastLoginDateDisplay.getTime()),
+                userId}));
+        jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN_DATES, batch);
+        written.forEach(pendingLogins::remove);
+        log.info(LAST_LOGIN_DATES_FLUSHED + batch.size());
+    }
+
+    /**
+     * Stops the background flushes and writes the dates still pending when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Starts a flush in the background, unless one is already queued or running.
+     */
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    log.error(e.getMessage(), e);
+                } finally {
+                    flushRequested.set(false);
+                }
+            });
+        }
+    }
+}
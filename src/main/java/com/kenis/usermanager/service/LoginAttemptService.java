@@ -1,38 +1,34 @@
 package com.kenis.usermanager.service;
 
-import lombok.extern.slf4j.Slf4j;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ExecutionException;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * <h3> Service that tracks login attempts for users.
  *
- * <p> A cache is a storage location that holds data that is expensive to compute or retrieve. By storing the data in a cache,
- * future requests for that data can be served more quickly because the data is already available.
- * <p> When a value is
- * requested from a {@link LoadingCache}, it first checks if the value is present in the cache. If it is, the value is
- * returned from the cache. If the value is not present in the cache, the {@link CacheLoader} specified when the
- * {@code LoadingCache} was created is used to load the value into the cache and return it to the caller.
- *
- * <p> In the {@code LoginAttemptService} class, the {@code LoadingCache} is used to store the number of login attempts made
- * by each user. It has a maximum size of 100 and entries expire after 15 minutes.
- * <p> When a user's login attempts are requested, the {@code LoadingCache} checks if the user is present in the cache. If they are, their login attempts are
- * returned. If the user is not present in the cache, the {@code CacheLoader} is used to add the user to the cache with
- * 0 login attempts.
+ * <p> Failed login attempts are kept in a {@link LoginAttemptStore}, counted over a sliding window of
+ * {@code login.attempts.window} milliseconds. With the shared {@code jdbc} store, the limit holds across every node,
+ * so spreading guesses over the nodes does not multiply the number of allowed attempts.
  * <p>
- * The {@code LoginAttemptService} class has the following constructors:
- *
- * <ul>
- *    <li>{@link #LoginAttemptService()} constructs a new {@code LoginAttemptService} instance and initializes the
- *      {@code loginAttemptCache} field with a {@code LoadingCache} configured to expire entries after 15 minutes and
- *     store a maximum of 100 entries. The {@code CacheLoader} for the {@code LoadingCache} returns 0 for any key that
- *    is not present in the cache.</li>
- * </ul>
+ * A local store, such as the default {@code memory} store, is read and written directly: it already answers in
+ * constant time without allocating. A shared store is kept off the login path. Failed attempts are added to a local
+ * buffer and written to the store in one batch every {@code login.attempts.flush-interval} milliseconds. The counts
+ * read from the store are kept in a near-cache for {@code login.attempts.near-cache-ttl} milliseconds, and the
+ * buffered attempts of this node are added to them, so this node always sees its own attempts at once and those of
+ * the other nodes within the TTL. Buffered attempts only leave the buffer once the store has accepted them, so a
+ * check never misses them while they are being written, and a failed write is retried with the next batch.
  */
 @Slf4j
 @Service
@@ -47,53 +43,71 @@ public class LoginAttemptService {
      */
     private static final int ATTEMPTS_INCREMENT = 1;
 
+    private final LoginAttemptStore loginAttemptStore;
+
+    /**
+     * Whether the store is local to this node, in which case the near-cache and the buffer are not used.
+     */
+    private final boolean local;
+
     /**
-     * Cache for storing login attempts for users. The keys are usernames and the values are the number of login attempts.
+     * Near-cache of the attempts read from a shared store, or null for a local store. The keys are usernames and the
+     * values are the number of login attempts.
      */
     private final LoadingCache<String, Integer> loginAttemptCache;
 
     /**
-     * Constructs a new {@code LoginAttemptService} instance and initializes the {@code loginAttemptCache} field with a
-     * {@code LoadingCache} configured to expire entries after 15 minutes and store a maximum of 100 entries. The
-     * {@code CacheLoader} for the {@code LoadingCache} returns 0 for any key that is not present in the cache.
+     * Failed attempts not written to a shared store yet, by username.
      */
-    public LoginAttemptService() {
-        super();
-        this.loginAttemptCache = CacheBuilder
+    private final Map<String, Integer> pendingAttempts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code LoginAttemptService} instance reading and writing the attempts through the given store.
+     *
+     * @param loginAttemptStore the store of the login attempts
+     * @param nearCacheTtl      how long the attempts read from a shared store are cached, in milliseconds
+     * @param nearCacheSize     the maximum number of usernames in the near-cache
+     */
+    @Autowired
+    public LoginAttemptService(LoginAttemptStore loginAttemptStore,
+                               @Value("${login.attempts.near-cache-ttl:1000}") long nearCacheTtl,
+                               @Value("${login.attempts.near-cache-size:10000}") long nearCacheSize) {
+        this.loginAttemptStore = loginAttemptStore;
+        this.local = loginAttemptStore.isLocal();
+        this.loginAttemptCache = local ? null : CacheBuilder
                 .newBuilder()
-                .expireAfterWrite(15, TimeUnit.MINUTES)
-                .maximumSize(100)
-                .build(new CacheLoader<String, Integer>() {
-                    public Integer load(String key) {
-                        return 0;
-                    }
-                });
+                .expireAfterWrite(nearCacheTtl, TimeUnit.MILLISECONDS)
+                .maximumSize(nearCacheSize)
+                .build(CacheLoader.from(loginAttemptStore::getAttempts));
     }
 
     /**
-     * Removes a user from the login attempts cache.
+     * Removes a user from the login attempts cache. The attempts in a shared store are only reset if there are any, so
+     * a successful login without prior failures does not write to the store; the check made for that login has just
+     * loaded the count into the near-cache.
      *
      * @param username the username of the user to remove from the cache
      */
     public void evictUserFromLoginAttemptCache(String username) {
-        loginAttemptCache.invalidate(username);
+        if (local) {
+            loginAttemptStore.reset(username);
+        } else {
+            resetSharedAttempts(username);
+        }
     }
 
     /**
      * Adds a user to the login attempts cache or increments their login attempts if they are already in the cache.
+     * With a shared store, the attempt is written with the next batch.
      *
      * @param username the username of the user to add to the cache or increment the login attempts for
-     * @throws ExecutionException if an exception is thrown while getting the current login attempts for the user
      */
-    public void addUserToLoginAttemptCache(String username)  {
-        int attempts = 0;
-        try {
-            attempts = ATTEMPTS_INCREMENT + loginAttemptCache.get(username);
-        } catch (ExecutionException e) {
-            e.printStackTrace();
+    public void addUserToLoginAttemptCache(String username) {
+        if (local) {
+            loginAttemptStore.recordAttempt(username);
+        } else {
+            pendingAttempts.merge(username, ATTEMPTS_INCREMENT, Integer::sum);
         }
-        loginAttemptCache.put(username, attempts);
-
     }
 
     /**
@@ -101,14 +115,47 @@ public class LoginAttemptService {
      *
      * @param username the username of the user to check
      * @return {@code true} if the user has exceeded the maximum allowed login attempts, {@code false} otherwise
-     * @throws ExecutionException if an exception is thrown while getting the current login attempts for the user
      */
-    public boolean hasExceededMaxAttempts(String username)  {
-        try {
-            return loginAttemptCache.get(username) >= MAXIMUM_NUMBER_OF_ATTEMPTS;
-        } catch (ExecutionException e) {
-            e.printStackTrace();
+    public boolean hasExceededMaxAttempts(String username) {
+        int attempts = local
+                ? loginAttemptStore.getAttempts(username)
+                : loginAttemptCache.getUnchecked(username) + pendingAttempts.getOrDefault(username, 0);
+        return attempts >= MAXIMUM_NUMBER_OF_ATTEMPTS;
+    }
+
+    /**
+     * Writes the buffered attempts to a shared store in one batch. Only once the write has succeeded is each username
+     * dropped from the near-cache and its written attempts taken off the buffer, in that order, so that a check made
+     * at any point counts them at least once. If the write fails, the attempts stay buffered for the next batch.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${login.attempts.flush-interval:200}")
+    public synchronized void flushPendingAttempts() {
+        if (pendingAttempts.isEmpty()) {
+            return;
         }
-        return false;
+        Map<String, Integer> batch = new HashMap<>(pendingAttempts);
+        loginAttemptStore.recordAttempts(batch);
+        batch.forEach((username, attempts) -> {
+            loginAttemptCache.invalidate(username);
+            pendingAttempts.computeIfPresent(username, (key, pending) -> pending > attempts ? pending - attempts : null);
+        });
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Drops the buffered attempts of the given user, resets their attempts in the shared store if there are any and
+     * drops them from the near-cache. This holds the lock of {@link #flushPendingAttempts()}, so a batch being written
+     * cannot bring back the attempts after the reset.
+     *
+     * @param username the username of the user
+     */
+    private synchronized void resetSharedAttempts(String username) {
+        Integer pending = pendingAttempts.remove(username);
+        if (pending != null || loginAttemptCache.getUnchecked(username) > 0) {
+            loginAttemptStore.reset(username);
+        }
+        loginAttemptCache.invalidate(username);
     }
 }
@@ -0,0 +1,51 @@
+package com.kenis.usermanager.service;
+
+import java.util.Map;
+
+/**
+ * Store of the failed login attempts of each username over a sliding time window.
+ * <p>
+ * The implementation is chosen with {@code login.attempts.store}: {@code memory} keeps the attempts on this node
+ * only, {@code jdbc} shares them between every node through the database.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public interface LoginAttemptStore {
+
+    /**
+     * Returns true if the attempts are kept in the memory of this node, so reading and writing them is as cheap as a
+     * local cache and needs neither a near-cache nor a write buffer in front of the store.
+     *
+     * @return true if the store is local to this node
+     */
+    boolean isLocal();
+
+    /**
+     * Adds one failed login attempt of the given username.
+     *
+     * @param username the username
+     */
+    void recordAttempt(String username);
+
+    /**
+     * Adds the given numbers of failed login attempts.
+     *
+     * @param attemptsByUsername the number of new failed login attempts of each username
+     */
+    void recordAttempts(Map<String, Integer> attemptsByUsername);
+
+    /**
+     * Returns the number of failed login attempts of the given username within the window.
+     *
+     * @param username the username
+     * @return the number of failed login attempts within the window
+     */
+    int getAttempts(String username);
+
+    /**
+     * Forgets the failed login attempts of the given username.
+     *
+     * @param username the username
+     */
+    void reset(String username);
+}
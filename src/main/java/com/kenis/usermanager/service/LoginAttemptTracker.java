@@ -0,0 +1,259 @@
+package com.kenis.usermanager.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * <h3> Lock-free, memory-bounded counter of failed login attempts over a sliding time window.
+ *
+ * <p> The window is split into {@code buckets} buckets of {@code bucketMillis} each. Every tracked username owns a
+ * slot of an open-addressing table, made of one cell holding the 64-bit FNV-1a hash of the username and one cell per
+ * bucket. A bucket cell packs the number of the time bucket it counts for (high bits) and the count (low bits) into a
+ * single {@code long}, so it is incremented and rolled over to a new time bucket with one compare-and-set. The number
+ * of attempts of a username is the sum of its buckets that still fall inside the window.
+ *
+ * <p> The table is sized once, from a memory budget, and never grows. Slots whose buckets have all left the window
+ * are reused for new usernames. If every slot a username may probe is taken by a username with recent attempts, the
+ * slot with the fewest attempts within the window is taken over and its attempts are forgotten. A username is never
+ * charged with the attempts of another one, so flooding the table with failed logins for random usernames cannot
+ * lock out an innocent user; at worst it makes the table forget the usernames with the fewest attempts.
+ *
+ * <p> Neither recording nor checking an attempt allocates.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public class LoginAttemptTracker {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int MAX_PROBES = 16;
+    private static final long EMPTY = 0L;
+
+    private final int buckets;
+    private final long bucketMillis;
+    private final LongSupplier clock;
+    private final int mask;
+
+    /**
+     * The hash of the username owning each slot, or {@link #EMPTY}.
+     */
+    private final AtomicLongArray keys;
+
+    /**
+     * The bucket cells, {@code buckets} consecutive cells per slot.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * Constructs a new {@code LoginAttemptTracker} using at most {@code memoryBudget} bytes for its table.
+     *
+     * @param memoryBudget the maximum size of the table, in bytes
+     * @param windowMillis the length of the sliding window, in milliseconds
+     * @param buckets      the number of buckets the window is split into
+     * @param clock        the source of the current time, in milliseconds
+     */
+    public LoginAttemptTracker(long memoryBudget, long windowMillis, int buckets, LongSupplier clock) {
+        if (buckets < 1 || windowMillis < buckets) {
+            throw new IllegalArgumentException("The window must hold at least one millisecond per bucket");
+        }
+        long bytesPerSlot = (long) Long.BYTES * (1 + buckets);
+        long slots = Long.highestOneBit(Math.max(MAX_PROBES, memoryBudget / bytesPerSlot));
+        slots = Math.min(slots, Integer.highestOneBit(Integer.MAX_VALUE / buckets));
+        this.buckets = buckets;
+        this.bucketMillis = windowMillis / buckets;
+        this.clock = clock;
+        this.mask = (int) slots - 1;
+        this.keys = new AtomicLongArray((int) slots);
+        this.counts = new AtomicLongArray((int) slots * buckets);
+    }
+
+    /**
+     * Records a failed login attempt for the given username.
+     *
+     * @param username the username
+     */
+    public void recordAttempt(String username) {
+        recordAttempts(username, 1);
+    }
+
+    /**
+     * Records the given number of failed login attempts for the given username.
+     *
+     * @param username the username
+     * @param attempts the number of failed login attempts
+     */
+    public void recordAttempts(String username, int attempts) {
+        long bucket = currentBucket();
+        int slot = findSlot(hash(username), bucket, true);
+        if (slot < 0) {
+            return;
+        }
+        int cell = slot * buckets + (int) (bucket % buckets);
+        long current;
+        long next;
+        do {
+            current = counts.get(cell);
+            long count = current >>> COUNT_BITS == bucket ? current & COUNT_MASK : 0L;
+            next = bucket << COUNT_BITS | Math.min(COUNT_MASK, count + attempts);
+        } while (!counts.compareAndSet(cell, current, next));
+    }
+
+    /**
+     * Returns the number of failed login attempts recorded for the given username within the window.
+     *
+     * @param username the username
+     * @return the number of failed login attempts within the window
+     */
+    public int getAttempts(String username) {
+        long bucket = currentBucket();
+        int slot = findSlot(hash(username), bucket, false);
+        if (slot < 0) {
+            return 0;
+        }
+        return (int) Math.min(countAttempts(slot, bucket), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Forgets the failed login attempts of the given username.
+     *
+     * @param username the username
+     */
+    public void reset(String username) {
+        int slot = findSlot(hash(username), currentBucket(), false);
+        if (slot >= 0) {
+            for (int cell = slot * buckets, end = cell + buckets; cell < end; cell++) {
+                counts.set(cell, 0L);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slots of the table, i.e. the number of usernames it can track at once.
+     *
+     * @return the number of slots of the table
+     */
+    public int getCapacity() {
+        return keys.length();
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Returns the slot of the username with the given hash.
+     *
+     * <p> The slots are probed linearly from the home slot of the hash. When {@code claim} is false, -1 is returned as
+     * soon as an empty slot shows the username is not tracked, or once every probed slot belongs to another username.
+     * When {@code claim} is true, the first empty slot is claimed for the username, or else the probed slot with the
+     * fewest attempts within the window (which has none if it is stale) is taken over and its buckets are cleared. An
+     * attempt recorded by the previous owner while the slot is taken over may be kept or forgotten, but the slot of
+     * another username is never returned.
+     *
+     * @param key    the hash of the username
+     * @param bucket the current time bucket
+     * @param claim  whether to claim a slot if the username is not tracked yet
+     * @return the slot of the username, or -1 if it is not tracked and either {@code claim} is false or another
+     * lookup took the slot to claim first
+     */
+    private int findSlot(long key, long bucket, boolean claim) {
+        int home = (int) (key ^ key >>> 32) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long owner = keys.get(slot);
+            if (owner == key) {
+                return slot;
+            }
+            if (owner == EMPTY) {
+                if (!claim) {
+                    return -1;
+                }
+                if (keys.compareAndSet(slot, EMPTY, key) || keys.get(slot) == key) {
+                    return slot;
+                }
+            }
+        }
+        return claim ? takeOverSlot(key, home, bucket) : -1;
+    }
+
+    /**
+     * Takes over, for the username with the given hash, the probed slot with the fewest attempts within the window.
+     *
+     * @param key    the hash of the username
+     * @param home   the home slot of the hash
+     * @param bucket the current time bucket
+     * @return the slot taken over, or -1 if another lookup took it first
+     */
+    private int takeOverSlot(long key, int home, long bucket) {
+        int victim = home;
+        long fewest = Long.MAX_VALUE;
+        for (int probe = 0; probe < MAX_PROBES && fewest > 0; probe++) {
+            int slot = (home + probe) & mask;
+            long attempts = countAttempts(slot, bucket);
+            if (attempts < fewest) {
+                fewest = attempts;
+                victim = slot;
+            }
+        }
+        long owner = keys.get(victim);
+        if (owner == key) {
+            return victim;
+        }
+        if (!keys.compareAndSet(victim, owner, key)) {
+            return keys.get(victim) == key ? victim : -1;
+        }
+        for (int cell = victim * buckets, end = cell + buckets; cell < end; cell++) {
+            counts.set(cell, 0L);
+        }
+        return victim;
+    }
+
+    /**
+     * Returns the number of attempts of the given slot within the window.
+     *
+     * @param slot   the slot
+     * @param bucket the current time bucket
+     * @return the number of attempts within the window
+     */
+    private long countAttempts(int slot, long bucket) {
+        long attempts = 0;
+        for (int cell = slot * buckets, end = cell + buckets; cell < end; cell++) {
+            long value = counts.get(cell);
+            if (isInWindow(value, bucket)) {
+                attempts += value & COUNT_MASK;
+            }
+        }
+        return attempts;
+    }
+
+    /**
+     * Returns true if the given bucket cell holds attempts counted within the window.
+     *
+     * @param value  the value of the bucket cell
+     * @param bucket the current time bucket
+     * @return true if the cell holds attempts within the window
+     */
+    private boolean isInWindow(long value, long bucket) {
+        long cellBucket = value >>> COUNT_BITS;
+        return value != 0L && cellBucket > bucket - buckets && cellBucket <= bucket;
+    }
+
+    private long currentBucket() {
+        return clock.getAsLong() / bucketMillis;
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the given username, never equal to {@link #EMPTY}.
+     *
+     * @param username the username
+     * @return the hash of the username
+     */
+    private static long hash(String username) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash == EMPTY ? 1L : hash;
+    }
+}
@@ -0,0 +1,53 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import static com.kenis.usermanager.constant.SecurityConstant.PASSWORD_REHASHED;
+
+/**
+ * <h3> Service that stores rehashed passwords off the request path.
+ *
+ * <p> When a user logs in with a password whose stored hash is outdated (unprefixed, of another algorithm or of a
+ * weaker bcrypt cost), the new hash is written here on a background thread, so the login response does not wait for
+ * the update.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+public class PasswordRehashService {
+    private final UserRepository userRepository;
+
+    private final UserCache userCache;
+
+    /**
+     * Constructs a new {@code PasswordRehashService} with the given repository.
+     *
+     * @param userRepository the repository for updating the users
+     * @param userCache      the cache the rehashed users are evicted from
+     */
+    @Autowired
+    public PasswordRehashService(UserRepository userRepository, UserCache userCache) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+    }
+
+    /**
+     * Replaces the stored password hash of the given user, unless it has changed since the user logged in.
+     *
+     * @param username        the username of the user
+     * @param currentPassword the password hash the user logged in with
+     * @param newPassword     the new password hash
+     */
+    @Async
+    public void rehashPassword(String username, String currentPassword, String newPassword) {
+        if (userRepository.updatePassword(username, currentPassword, newPassword) > 0) {
+            userCache.evictUsername(username);
+            log.info(PASSWORD_REHASHED + username);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.RefreshToken;
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.exception.domain.InvalidRefreshTokenException;
+import com.kenis.usermanager.repository.RefreshTokenRepository;
+import com.kenis.usermanager.repository.UserRepository;
+import com.kenis.usermanager.utility.Digests;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+
+import static com.kenis.usermanager.constant.SecurityConstant.*;
+
+/**
+ * <h3> Service that issues and rotates refresh tokens.
+ *
+ * <p> A refresh token is an opaque random string handed to the client at login next to the short-lived access token.
+ * Only its SHA-256 digest is stored, in the {@code refresh_token} table. When the access token expires, the client
+ * exchanges the refresh token for a new access token without sending its password again, which skips the bcrypt
+ * check of a full login. Each refresh token can be used once: using it deletes it and issues a new one.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+@Transactional
+public class RefreshTokenService {
+    private static final int TOKEN_LENGTH_IN_BYTES = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    private final UserRepository userRepository;
+
+    /**
+     * Constructs a new {@code RefreshTokenService} with the given repositories.
+     *
+     * @param refreshTokenRepository the repository for storing refresh tokens
+     * @param userRepository         the repository for retrieving the owners of refresh tokens
+     */
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Issues a new refresh token for the given user.
+     *
+     * @param user the user to issue the refresh token for
+     * @return the opaque refresh token to hand to the client
+     */
+    public String issueRefreshToken(User user) {
+        byte[] bytes = new byte[TOKEN_LENGTH_IN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Date expiresAt = new Date(System.currentTimeMillis() + REFRESH_TOKEN_EXPIRATION_TIME);
+        refreshTokenRepository.save(new RefreshToken(Digests.sha256(token), user.getId(), expiresAt));
+        return token;
+    }
+
+    /**
+     * Consumes the given refresh token and returns the user it was issued to. The token cannot be used again.
+     *
+     * @param token the opaque refresh token sent by the client
+     * @return the user the refresh token was issued to
+     * @throws InvalidRefreshTokenException if the token is unknown, expired, already used, or its user can no longer
+     *                                      log in
+     */
+    public User consumeRefreshToken(String token) throws InvalidRefreshTokenException {
+        RefreshToken refreshToken = refreshTokenRepository.findRefreshTokenByTokenHash(Digests.sha256(token));
+        if (refreshToken == null || refreshTokenRepository.deleteRefreshTokenById(refreshToken.getId()) == 0) {
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        if (refreshToken.getExpiresAt().before(new Date())) {
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        User user = userRepository.findUserById(refreshToken.getUserId());
+        if (user == null || !user.getIsActive() || !user.getIsNotLocked()) {
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        return user;
+    }
+
+    /**
+     * Revokes the given refresh token, if it exists.
+     *
+     * @param token the opaque refresh token sent by the client
+     */
+    public void revokeRefreshToken(String token) {
+        RefreshToken refreshToken = refreshTokenRepository.findRefreshTokenByTokenHash(Digests.sha256(token));
+        if (refreshToken != null) {
+            refreshTokenRepository.deleteRefreshTokenById(refreshToken.getId());
+        }
+    }
+
+    /**
+     * Revokes every refresh token issued to the user with the given id.
+     *
+     * @param userId the id of the user
+     */
+    public void revokeRefreshTokens(Long userId) {
+        refreshTokenRepository.deleteRefreshTokensByUserId(userId);
+    }
+
+    /**
+     * Deletes the expired refresh tokens on a schedule.
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh-token.prune-interval:3600000}")
+    public void deleteExpiredRefreshTokens() {
+        int deleted = refreshTokenRepository.deleteRefreshTokensExpiredBefore(new Date());
+        if (deleted > 0) {
+            log.info(EXPIRED_REFRESH_TOKENS_DELETED + deleted);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.RevokedToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static com.kenis.usermanager.constant.SecurityConstant.EXPIRED_REVOKED_TOKENS_DELETED;
+
+/**
+ * <h3> Store of the revoked JWT ids, shared by every node through the database.
+ *
+ * <p> Each revoked token is a row of the {@code revoked_token} table holding its id, its expiry and the time it was
+ * revoked, so that nodes can read only the tokens revoked since their last refresh. Rows are deleted once the token
+ * has expired.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+public class RevokedTokenStore {
+    private static final String INSERT_REVOKED_TOKEN =
+            "insert into revoked_token (token_id, expires_at, revoked_at) values (?, ?, ?) on conflict (token_id) do nothing";
+    private static final String SELECT_REVOKED_TOKENS =
+            "select token_id, expires_at, revoked_at from revoked_token where revoked_at > ? and expires_at >= ?";
+    private static final String DELETE_REVOKED_TOKENS = "delete from revoked_token where expires_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructs a new {@code RevokedTokenStore} reading and writing the revoked tokens with the given JDBC template.
+     *
+     * @param jdbcTemplate the JDBC template the revoked tokens are read and written with
+     */
+    public RevokedTokenStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stores the given revoked token, unless it is already stored.
+     *
+     * @param revokedToken the revoked token
+     */
+    public void saveRevokedToken(RevokedToken revokedToken) {
+        jdbcTemplate.update(INSERT_REVOKED_TOKEN, revokedToken.getTokenId(),
+                new Timestamp(revokedToken.getExpiresAt()), new Timestamp(revokedToken.getRevokedAt()));
+    }
+
+    /**
+     * Returns the tokens revoked after the given time that have not expired at the other given time.
+     *
+     * @param revokedAfter the time after which the tokens were revoked, in milliseconds since the epoch
+     * @param now          the current time, in milliseconds since the epoch
+     * @return the tokens revoked after the given time and not yet expired
+     */
+    public List<RevokedToken> findRevokedTokensRevokedAfter(long revokedAfter, long now) {
+        return jdbcTemplate.query(SELECT_REVOKED_TOKENS, (resultSet, row) -> new RevokedToken(resultSet.getString(1),
+                        resultSet.getTimestamp(2).getTime(), resultSet.getTimestamp(3).getTime()),
+                new Timestamp(revokedAfter), new Timestamp(now));
+    }
+
+    /**
+     * Deletes the revoked tokens that expired before the given time.
+     *
+     * @param expiredBefore the time before which the tokens expired, in milliseconds since the epoch
+     */
+    public void deleteRevokedTokensExpiredBefore(long expiredBefore) {
+        int deleted = jdbcTemplate.update(DELETE_REVOKED_TOKENS, new Timestamp(expiredBefore));
+        if (deleted > 0) {
+            log.info(EXPIRED_REVOKED_TOKENS_DELETED + deleted);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserTokenEpoch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import static com.kenis.usermanager.constant.SecurityConstant.EXPIRATION_TIM;
+
+/**
+ * <h3> Service that tracks the token epoch of each user.
+ *
+ * <p> Every user has a token epoch, stored on {@link User} and embedded in each token issued to them together with
+ * the database id of the user. Locking, disabling, renaming or changing the role of a user advances their epoch, and
+ * deleting a user sets it to a value no token carries, which makes every token issued before the change stale. The
+ * security filter compares the epoch of a token with the epoch held in memory here, so that check never goes to the
+ * database.
+ *
+ * <p> Epochs are keyed by the database id of the user, which is never reused, so a new user who takes the username of
+ * a deleted or renamed one is not affected. Each change is written to the shared {@link TokenEpochStore} in the
+ * transaction of the caller and applied here once it commits. Every node reads the epochs advanced since its last
+ * refresh on a short schedule ({@code jwt.epoch.refresh-interval}), reading back {@code jwt.epoch.refresh-overlap}
+ * milliseconds to catch changes committed late or stamped by a node with a slower clock.
+ *
+ * <p> Once every token issued before a change has expired, its epoch is no longer needed: it is dropped from memory
+ * on refresh and deleted from the store on a schedule ({@code jwt.epoch.prune-interval}).
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+public class TokenEpochService {
+    /**
+     * The epoch given to deleted users, so that none of their tokens is accepted any more.
+     */
+    private static final int DELETED_USER_EPOCH = Integer.MAX_VALUE;
+
+    private final TokenEpochStore tokenEpochStore;
+
+    private final long refreshOverlapMillis;
+
+    private final LongSupplier clock;
+
+    /**
+     * The current token epoch of each user whose epoch has been advanced, by database id.
+     */
+    private final Map<Long, UserTokenEpoch> tokenEpochs = new ConcurrentHashMap<>();
+
+    /**
+     * The latest update time read from the store so far, in milliseconds since the epoch.
+     */
+    private volatile long refreshedUpTo;
+
+    /**
+     * Constructs a new {@code TokenEpochService} with the given store.
+     *
+     * @param tokenEpochStore      the store the token epochs are shared through
+     * @param refreshOverlapMillis how far back each refresh reads before the latest epoch already read, in milliseconds
+     */
+    @Autowired
+    public TokenEpochService(TokenEpochStore tokenEpochStore,
+                             @Value("${jwt.epoch.refresh-overlap:60000}") long refreshOverlapMillis) {
+        this(tokenEpochStore, refreshOverlapMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a new {@code TokenEpochService} reading the time from the given clock.
+     *
+     * @param tokenEpochStore      the store the token epochs are shared through
+     * @param refreshOverlapMillis how far back each refresh reads before the latest epoch already read, in milliseconds
+     * @param clock                the clock, in milliseconds since the epoch
+     */
+    TokenEpochService(TokenEpochStore tokenEpochStore, long refreshOverlapMillis, LongSupplier clock) {
+        this.tokenEpochStore = tokenEpochStore;
+        this.refreshOverlapMillis = refreshOverlapMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns true if a token carrying the given epoch is still current for the given user, false otherwise. Tokens
+     * issued without a user id cannot be checked and are never current.
+     *
+     * @param userId     the database id of the user the token was issued to, or null
+     * @param tokenEpoch the epoch carried by the token
+     * @return true if the token epoch is current, false otherwise
+     */
+    public boolean isCurrent(Long userId, int tokenEpoch) {
+        if (userId == null) {
+            return false;
+        }
+        UserTokenEpoch currentEpoch = tokenEpochs.get(userId);
+        return currentEpoch == null || tokenEpoch >= currentEpoch.getTokenEpoch();
+    }
+
+    /**
+     * Advances the token epoch of the given user, so that every token issued to them so far is rejected. The new
+     * epoch is set on the user, to be saved by the caller, and written to the store in the same transaction.
+     *
+     * @param user the user whose token epoch to advance
+     */
+    public void advanceTokenEpoch(User user) {
+        int tokenEpoch = (user.getTokenEpoch() == null ? 0 : user.getTokenEpoch()) + 1;
+        user.setTokenEpoch(tokenEpoch);
+        saveTokenEpoch(user.getId(), tokenEpoch);
+    }
+
+    /**
+     * Rejects every token issued to the user with the given database id, after the user has been deleted.
+     *
+     * @param userId the database id of the deleted user
+     */
+    public void revokeAllTokens(Long userId) {
+        saveTokenEpoch(userId, DELETED_USER_EPOCH);
+    }
+
+    /**
+     * Reads the token epochs advanced since the last refresh, at start-up and then on the configured schedule, so
+     * that epochs advanced on other nodes are picked up, and drops the epochs that are no longer needed.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${jwt.epoch.refresh-interval:5000}")
+    public void refreshTokenEpochs() {
+        long readUpTo = refreshedUpTo;
+        for (UserTokenEpoch userTokenEpoch : tokenEpochStore.findTokenEpochsUpdatedAfter(readUpTo - refreshOverlapMillis)) {
+            applyTokenEpoch(userTokenEpoch);
+            readUpTo = Math.max(readUpTo, userTokenEpoch.getUpdatedAt());
+        }
+        refreshedUpTo = readUpTo;
+        long expiredBefore = getExpiredBefore();
+        tokenEpochs.values().removeIf(userTokenEpoch -> userTokenEpoch.getUpdatedAt() < expiredBefore);
+    }
+
+    /**
+     * Deletes from the store the token epochs that every token issued before them has outlived.
+     */
+    @Scheduled(fixedDelayString = "${jwt.epoch.prune-interval:60000}")
+    public void pruneTokenEpochs() {
+        tokenEpochStore.deleteTokenEpochsUpdatedBefore(getExpiredBefore());
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Writes the given token epoch to the store and applies it here once the transaction of the caller commits, or
+     * right away outside a transaction.
+     *
+     * @param userId     the database id of the user
+     * @param tokenEpoch the new token epoch of the user
+     */
+    private void saveTokenEpoch(Long userId, int tokenEpoch) {
+        UserTokenEpoch userTokenEpoch = new UserTokenEpoch(userId, tokenEpoch, clock.getAsLong());
+        tokenEpochStore.saveTokenEpoch(userId, tokenEpoch, userTokenEpoch.getUpdatedAt());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyTokenEpoch(userTokenEpoch);
+                }
+            });
+        } else {
+            applyTokenEpoch(userTokenEpoch);
+        }
+    }
+
+    /**
+     * Keeps the given token epoch if it is not behind the one already held for the user.
+     *
+     * @param userTokenEpoch the token epoch of a user
+     */
+    private void applyTokenEpoch(UserTokenEpoch userTokenEpoch) {
+        tokenEpochs.merge(userTokenEpoch.getUserId(), userTokenEpoch, (held, read) ->
+                read.getTokenEpoch() > held.getTokenEpoch()
+                        || (read.getTokenEpoch() == held.getTokenEpoch() && read.getUpdatedAt() > held.getUpdatedAt())
+                        ? read : held);
+    }
+
+    /**
+     * Returns the time before which an advanced epoch no longer matters, because every token issued before it has
+     * expired.
+     *
+     * @return the time before which epochs can be dropped, in milliseconds since the epoch
+     */
+    private long getExpiredBefore() {
+        return clock.getAsLong() - EXPIRATION_TIM - refreshOverlapMillis;
+    }
+}
@@ -0,0 +1,79 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.UserTokenEpoch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static com.kenis.usermanager.constant.SecurityConstant.EXPIRED_TOKEN_EPOCHS_DELETED;
+
+/**
+ * <h3> Store of the advanced token epochs, shared by every node through the database.
+ *
+ * <p> The epochs live in the {@code token_epoch} table, keyed by the database id of the user, which is never reused.
+ * An epoch is written with a PostgreSQL upsert that keeps the greater of the stored and the new epoch, and stamps the
+ * row with the time of the write, so that nodes can read only the epochs advanced since their last refresh. The write
+ * joins the transaction of the caller and is only visible to other nodes once that transaction commits.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+public class TokenEpochStore {
+    private static final String UPSERT_TOKEN_EPOCH =
+            "insert into token_epoch (user_id, token_epoch, updated_at) values (?, ?, ?) " +
+            "on conflict (user_id) do update set token_epoch = greatest(token_epoch.token_epoch, excluded.token_epoch), " +
+            "updated_at = excluded.updated_at";
+    private static final String SELECT_TOKEN_EPOCHS =
+            "select user_id, token_epoch, updated_at from token_epoch where updated_at > ?";
+    private static final String DELETE_TOKEN_EPOCHS = "delete from token_epoch where updated_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructs a new {@code TokenEpochStore} reading and writing the epochs with the given JDBC template.
+     *
+     * @param jdbcTemplate the JDBC template the epochs are read and written with
+     */
+    public TokenEpochStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stores the given token epoch of a user, unless a greater one is already stored.
+     *
+     * @param userId     the database id of the user
+     * @param tokenEpoch the new token epoch of the user
+     * @param updatedAt  the time of the change, in milliseconds since the epoch
+     */
+    public void saveTokenEpoch(long userId, int tokenEpoch, long updatedAt) {
+        jdbcTemplate.update(UPSERT_TOKEN_EPOCH, userId, tokenEpoch, new Timestamp(updatedAt));
+    }
+
+    /**
+     * Returns the token epochs stored or advanced after the given time.
+     *
+     * @param updatedAfter the time after which the epochs were advanced, in milliseconds since the epoch
+     * @return the token epochs advanced after the given time
+     */
+    public List<UserTokenEpoch> findTokenEpochsUpdatedAfter(long updatedAfter) {
+        return jdbcTemplate.query(SELECT_TOKEN_EPOCHS, (resultSet, row) -> new UserTokenEpoch(
+                resultSet.getLong(1), resultSet.getInt(2), resultSet.getTimestamp(3).getTime()),
+                new Timestamp(updatedAfter));
+    }
+
+    /**
+     * Deletes the token epochs last advanced before the given time.
+     *
+     * @param updatedBefore the time before which the epochs were last advanced, in milliseconds since the epoch
+     */
+    public void deleteTokenEpochsUpdatedBefore(long updatedBefore) {
+        int deleted = jdbcTemplate.update(DELETE_TOKEN_EPOCHS, new Timestamp(updatedBefore));
+        if (deleted > 0) {
+            log.info(EXPIRED_TOKEN_EPOCHS_DELETED + deleted);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.kenis.usermanager.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.kenis.usermanager.domain.RevokedToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import static com.kenis.usermanager.constant.SecurityConstant.REVOKED_TOKEN_IDS_PRUNED;
+
+/**
+ * <h3> Service that tracks revoked JWT tokens until they expire.
+ *
+ * <p> Every token carries a unique id in its {@code jti} claim. Revoking a token records that id, together with the
+ * expiry of the token, in an authoritative set. Because almost no token that reaches the security filter has been
+ * revoked, the set sits behind a {@link BloomFilter}: a token id the filter has never seen is answered without any
+ * lookup, and only the rare probable hits are checked against the set.
+ *
+ * <p> Revocations are written to the shared {@link RevokedTokenStore}, so that they survive a restart and apply on every
+ * node. Each node loads the unexpired revocations at start-up and then reads the ones made since its last refresh on
+ * a short schedule ({@code jwt.revocation.refresh-interval}), reading back {@code jwt.revocation.refresh-overlap}
+ * milliseconds to catch revocations stamped by a node with a slower clock.
+ *
+ * <p> A revoked token id is only needed until the token expires, since an expired token is rejected anyway. Expired
+ * ids are pruned in the background, from memory and from the store, and the Bloom filter, which cannot forget an
+ * entry, is rebuilt from the remaining ids at the same time.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.001;
+
+    /**
+     * The number of revoked token ids the Bloom filter is sized for, before it is rebuilt.
+     */
+    private final int expectedRevocations;
+
+    private final RevokedTokenStore revokedTokenStore;
+
+    private final long refreshOverlapMillis;
+
+    private final LongSupplier clock;
+
+    /**
+     * The latest revocation time read from the store so far, in milliseconds since the epoch.
+     */
+    private volatile long refreshedUpTo;
+
+    /**
+     * The revoked token ids, mapped to the expiry of their token in milliseconds since the epoch.
+     */
+    private final Map<String, Long> revokedTokenIds = new ConcurrentHashMap<>();
+
+    /**
+     * Bloom filter over the keys of {@link #revokedTokenIds}.
+     */
+    private volatile BloomFilter<CharSequence> bloomFilter;
+
+    /**
+     * Constructs a new {@code TokenRevocationService} whose Bloom filter is sized for the given number of revoked
+     * token ids.
+     *
+     * @param revokedTokenStore    the store the revocations are shared through
+     * @param expectedRevocations  the number of revoked token ids to size the Bloom filter for
+     * @param refreshOverlapMillis how far back each refresh reads before the latest revocation already read, in
+     *                             milliseconds
+     */
+    @Autowired
+    public TokenRevocationService(RevokedTokenStore revokedTokenStore,
+                                  @Value("${jwt.revocation.expected-revocations:10000}") int expectedRevocations,
+                                  @Value("${jwt.revocation.refresh-overlap:60000}") long refreshOverlapMillis) {
+        this(revokedTokenStore, expectedRevocations, refreshOverlapMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a new {@code TokenRevocationService} reading the time from the given clock.
+     *
+     * @param revokedTokenStore    the store the revocations are shared through
+     * @param expectedRevocations  the number of revoked token ids to size the Bloom filter for
+     * @param refreshOverlapMillis how far back each refresh reads before the latest revocation already read, in
+     *                             milliseconds
+     * @param clock                the clock, in milliseconds since the epoch
+     */
+    TokenRevocationService(RevokedTokenStore revokedTokenStore, int expectedRevocations, long refreshOverlapMillis,
+                           LongSupplier clock) {
+        this.revokedTokenStore = revokedTokenStore;
+        this.expectedRevocations = expectedRevocations;
+        this.refreshOverlapMillis = refreshOverlapMillis;
+        this.clock = clock;
+        this.bloomFilter = newBloomFilter(expectedRevocations);
+    }
+
+    /**
+     * Revokes the token with the given id until the given expiry, on this node right away and on the others at their
+     * next refresh.
+     *
+     * @param tokenId   the id of the token, read from its {@code jti} claim
+     * @param expiresAt the expiry of the token, in milliseconds since the epoch
+     */
+    public void revoke(String tokenId, long expiresAt) {
+        revokedTokenStore.saveRevokedToken(new RevokedToken(tokenId, expiresAt, clock.getAsLong()));
+        addRevokedTokenId(tokenId, expiresAt);
+    }
+
+    /**
+     * Returns true if the token with the given id has been revoked, false otherwise.
+     *
+     * @param tokenId the id of the token, read from its {@code jti} claim, or null for tokens that do not have one
+     * @return true if the token has been revoked, false otherwise
+     */
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && bloomFilter.mightContain(tokenId) && revokedTokenIds.containsKey(tokenId);
+    }
+
+    /**
+     * Reads the tokens revoked since the last refresh, at start-up and then on the configured schedule, so that
+     * revocations made on other nodes are picked up.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval:5000}")
+    public void refreshRevokedTokenIds() {
+        long readUpTo = refreshedUpTo;
+        for (RevokedToken revokedToken : revokedTokenStore.findRevokedTokensRevokedAfter(
+                readUpTo - refreshOverlapMillis, clock.getAsLong())) {
+            addRevokedTokenId(revokedToken.getTokenId(), revokedToken.getExpiresAt());
+            readUpTo = Math.max(readUpTo, revokedToken.getRevokedAt());
+        }
+        refreshedUpTo = readUpTo;
+    }
+
+    /**
+     * Drops the ids of the revoked tokens that have expired, from memory and from the store, and rebuilds the Bloom
+     * filter from the remaining ones.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.prune-interval:60000}")
+    public void pruneExpiredTokenIds() {
+        long now = clock.getAsLong();
+        revokedTokenStore.deleteRevokedTokensExpiredBefore(now);
+        int sizeBefore = revokedTokenIds.size();
+        revokedTokenIds.values().removeIf(expiresAt -> expiresAt < now);
+        BloomFilter<CharSequence> rebuiltBloomFilter = newBloomFilter(Math.max(expectedRevocations, revokedTokenIds.size() * 2));
+        revokedTokenIds.keySet().forEach(rebuiltBloomFilter::put);
+        bloomFilter = rebuiltBloomFilter;
+        // ids revoked while the filter was being rebuilt may only have reached the previous filter
+        revokedTokenIds.keySet().forEach(rebuiltBloomFilter::put);
+        if (sizeBefore != revokedTokenIds.size()) {
+            log.info(REVOKED_TOKEN_IDS_PRUNED + (sizeBefore - revokedTokenIds.size()));
+        }
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Adds the given token id to the revoked ids and to the Bloom filter.
+     *
+     * @param tokenId   the id of the token
+     * @param expiresAt the expiry of the token, in milliseconds since the epoch
+     */
+    private void addRevokedTokenId(String tokenId, long expiresAt) {
+        revokedTokenIds.put(tokenId, expiresAt);
+        bloomFilter.put(tokenId);
+    }
+
+    /**
+     * Returns a new, empty Bloom filter sized for the given number of token ids.
+     *
+     * @param expectedInsertions the number of token ids to size the Bloom filter for
+     * @return a new Bloom filter
+     */
+    private static BloomFilter<CharSequence> newBloomFilter(int expectedInsertions) {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, FALSE_POSITIVE_PROBABILITY);
+    }
+}
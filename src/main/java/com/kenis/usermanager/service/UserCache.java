@@ -0,0 +1,302 @@
+package com.kenis.usermanager.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <h3> Read-through cache of users, reachable by id, username, email and user id.
+ *
+ * <p> Each user is cached once, keyed by its database id, in a Guava cache bounded by {@code user.cache.maximum-size}
+ * and expiring {@code user.cache.ttl} milliseconds after it was loaded. Three index maps resolve a username, an email
+ * or a user id to that database id; an index entry is only trusted if the cached user still carries the same value,
+ * and the index entries of a user are dropped together with it.
+ *
+ * <p> The cache holds detached copies and hands out a new copy on every read, so callers may modify what they get
+ * without affecting the cache or other threads. Code that writes a user must load it from the repository and call
+ * {@link #evict(User)}: the user is evicted right away and again once the transaction commits. Every eviction also
+ * advances a generation counter, and a user loaded on a miss is only cached if no eviction happened while it was being
+ * loaded, so a read that loaded the old state before the commit cannot put it back afterwards. Users loaded on a miss
+ * are read from the primary database in a transaction of their own, even when the caller runs in a read-only
+ * transaction routed to the replica, so replication lag cannot put the state from before a write back into the
+ * cache for a whole TTL. Hit and miss statistics are published as {@code cache.*} metrics tagged {@code cache=users}.
+ *
+ * <p> The cache is local to each node, so a user written on another node may be served stale until the TTL expires.
+ * Authentication therefore never reads it (see {@link #findUncachedUserByUsername(String)}).
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Service
+public class UserCache {
+    private final UserRepository userRepository;
+
+    /**
+     * Runs the loads of the cache misses in a new read-write transaction, which is routed to the primary database.
+     */
+    private final TransactionTemplate primaryReads;
+
+    private final Cache<Long, User> usersById;
+
+    private final Map<String, Long> idsByUsername = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> idsByUserId = new ConcurrentHashMap<>();
+
+    /**
+     * Advanced by every eviction, so that a load overlapping an eviction is not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Constructs a new {@code UserCache} reading the users through the given repository.
+     *
+     * @param userRepository     the repository the users are loaded from on a miss
+     * @param transactionManager the transaction manager the loads are run with
+     * @param maximumSize        the maximum number of cached users
+     * @param ttl                how long a user stays cached after it was loaded, in milliseconds
+     * @param meterRegistry      the registry the cache statistics are published to
+     */
+    @Autowired
+    public UserCache(UserRepository userRepository,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${user.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${user.cache.ttl:60000}") long ttl,
+                     MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.primaryReads = new TransactionTemplate(transactionManager);
+        this.primaryReads.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        RemovalListener<Long, User> removeIndexes = removal -> {
+            User user = removal.getValue();
+            if (user != null) {
+                removeIndex(idsByUsername, user.getUsername(), removal.getKey());
+                removeIndex(idsByEmail, user.getEmail(), removal.getKey());
+                removeIndex(idsByUserId, user.getUserId(), removal.getKey());
+            }
+        };
+        this.usersById = CacheBuilder
+                .newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .removalListener(removeIndexes)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, usersById, "users");
+    }
+
+    /**
+     * Returns the user with the given database id, or null if there is none.
+     *
+     * @param id the database id of the user
+     * @return a copy of the user, or null
+     */
+    public User findUserById(Long id) {
+        User user = usersById.getIfPresent(id);
+        if (user == null) {
+            long loadedAt = generation.get();
+            user = cache(loadFromPrimary(() -> userRepository.findUserById(id)), loadedAt);
+        }
+        return copyOf(user);
+    }
+
+    /**
+     * Returns the user with the given username, or null if there is none.
+     *
+     * @param username the username of the user
+     * @return a copy of the user, or null
+     */
+    public User findUserByUsername(String username) {
+        return find(idsByUsername, username, User::getUsername, userRepository::findUserByUsername);
+    }
+
+    /**
+     * Returns the user with the given email, or null if there is none.
+     *
+     * @param email the email of the user
+     * @return a copy of the user, or null
+     */
+    public User findUserByEmail(String email) {
+        return find(idsByEmail, email, User::getEmail, userRepository::findUserByEmail);
+    }
+
+    /**
+     * Returns the user with the given user id, or null if there is none.
+     *
+     * @param userId the user id of the user
+     * @return a copy of the user, or null
+     */
+    public User findUserByUserId(String userId) {
+        return find(idsByUserId, userId, User::getUserId, userRepository::findUserByUserId);
+    }
+
+    /**
+     * Returns the user with the given username read straight from the repository, or null if there is none.
+     * <p>
+     * The cache is neither read nor filled, so the caller sees the state of the database it reads from. This is what
+     * authentication uses: run in a read-write transaction, it reads the primary, and a cached or replica copy with a
+     * stale password hash or lock state is never used to log a user in.
+     *
+     * @param username the username of the user
+     * @return a copy of the user, or null
+     */
+    public User findUncachedUserByUsername(String username) {
+        return username == null ? null : copyOf(userRepository.findUserByUsername(username));
+    }
+
+    /**
+     * Evicts the given user now and, if a transaction is active, again once it commits.
+     *
+     * @param user the user being written
+     */
+    public void evict(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Long id = user.getId();
+        invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evicts the user with the given username, if it is cached.
+     *
+     * @param username the username of the user
+     */
+    public void evictUsername(String username) {
+        Long id = username == null ? null : idsByUsername.get(username);
+        if (id != null) {
+            invalidate(id);
+        }
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Returns the cached user the given index resolves the given value to, or loads it on a miss.
+     *
+     * @param index    the index map of the looked-up field
+     * @param value    the looked-up value
+     * @param field    the getter of the looked-up field
+     * @param loader   the repository query loading the user by that field
+     * @return a copy of the user, or null
+     */
+    private User find(Map<String, Long> index, String value, Function<User, String> field,
+                      Function<String, User> loader) {
+        if (value == null) {
+            return null;
+        }
+        Long id = index.get(value);
+        User user = id == null ? null : usersById.getIfPresent(id);
+        if (user == null || !value.equals(field.apply(user))) {
+            long loadedAt = generation.get();
+            user = cache(loadFromPrimary(() -> loader.apply(value)), loadedAt);
+        }
+        return copyOf(user);
+    }
+
+    /**
+     * Runs the given load in a new read-write transaction, so that it reads the primary database even if the caller
+     * runs in a read-only transaction routed to the replica.
+     *
+     * @param load the repository query loading the user
+     * @return the loaded user, or null
+     */
+    private User loadFromPrimary(Supplier<User> load) {
+        return primaryReads.execute(status -> load.get());
+    }
+
+    /**
+     * Caches a copy of the given user freshly loaded from the repository and indexes it, unless a user was evicted
+     * since the load started. The generation is checked again after the put, which together with the order of
+     * {@link #invalidate(Long)} ensures that a concurrent eviction either prevents the put or removes it.
+     *
+     * @param user     the loaded user, or null
+     * @param loadedAt the generation read before the user was loaded
+     * @return the copy of the user, or null
+     */
+    private User cache(User user, long loadedAt) {
+        if (user == null) {
+            return null;
+        }
+        User copy = copyOf(user);
+        if (generation.get() != loadedAt) {
+            return copy;
+        }
+        usersById.put(copy.getId(), copy);
+        putIndex(idsByUsername, copy.getUsername(), copy.getId());
+        putIndex(idsByEmail, copy.getEmail(), copy.getId());
+        putIndex(idsByUserId, copy.getUserId(), copy.getId());
+        if (generation.get() != loadedAt) {
+            usersById.invalidate(copy.getId());
+        }
+        return copy;
+    }
+
+    /**
+     * Advances the generation, then evicts the user with the given database id.
+     *
+     * @param id the database id of the user
+     */
+    private void invalidate(Long id) {
+        generation.incrementAndGet();
+        usersById.invalidate(id);
+    }
+
+    private static void putIndex(Map<String, Long> index, String value, Long id) {
+        if (value != null) {
+            index.put(value, id);
+        }
+    }
+
+    private static void removeIndex(Map<String, Long> index, String value, Long id) {
+        if (value != null) {
+            index.remove(value, id);
+        }
+    }
+
+    /**
+     * Returns a detached copy of the given user.
+     *
+     * @param user the user, or null
+     * @return a copy of the user, or null
+     */
+    private static User copyOf(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User(user.getUserId(), user.getFirstName(), user.getLastName(), user.getUsername(),
+                user.getPassword(), user.getEmail(), user.getProfileImageUrl(), user.getLastLoginDate(),
+                user.getLastLoginDateDisplay(), user.getJoinDate(), user.getRole(), user.getIsActive(),
+                user.getIsNotLocked());
+        copy.setId(user.getId());
+        copy.setTokenEpoch(user.getTokenEpoch());
+        return copy;
+    }
+}
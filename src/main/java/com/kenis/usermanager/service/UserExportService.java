@@ -0,0 +1,234 @@
+package com.kenis.usermanager.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * <h3> Service that streams every user to an output stream, one row at a time.
+ *
+ * <p> The users are read through a forward-only JDBC cursor: PostgreSQL only streams a result set when the statement
+ * has a fetch size and runs inside a transaction, so the query runs in a read-only transaction that lasts exactly as
+ * long as the export, and rows are fetched {@code user.export.fetch-size} at a time. Each row is written to the
+ * stream as soon as it is read, either as one JSON object per line (NDJSON) or as a CSV line, so the memory used does
+ * not depend on the number of users. Password hashes are never exported, and CSV fields that a spreadsheet would
+ * read as a formula are prefixed with a quote. An export may run for up to {@code user.export.timeout} milliseconds.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Service
+public class UserExportService {
+    private static final String SELECT_USERS =
+            "select id, user_id, first_name, last_name, username, email, profile_image_url, last_login_date, " +
+            "last_login_date_display, join_date, role, is_active, is_not_locked from user_details order by id";
+    private static final String[] COLUMNS = {"id", "userId", "firstName", "lastName", "username", "email",
+            "profileImageUrl", "lastLoginDate", "lastLoginDateDisplay", "joinDate", "role", "isActive", "isNotLocked"};
+    private static final int FLUSH_EVERY_ROWS = 1000;
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long timeoutMillis;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * The formats the users can be exported in.
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * Constructs a new {@code UserExportService}.
+     *
+     * @param dataSource         the data source the users are read from
+     * @param transactionManager the transaction manager the export transaction is run with
+     * @param fetchSize          the number of rows fetched from the database at a time
+     * @param timeoutMillis      how long an export may run, in milliseconds
+     */
+    @Autowired
+    public UserExportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                             @Value("${user.export.fetch-size:1000}") int fetchSize,
+                             @Value("${user.export.timeout:3600000}") long timeoutMillis) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns how long an export may run before the request times out.
+     *
+     * @return the timeout of an export, in milliseconds
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Writes every user to the given stream in the given format, in id order.
+     *
+     * @param outputStream the stream to write to
+     * @param format       the format to write the users in
+     * @throws IOException if writing to the stream fails
+     */
+    public void exportUsers(OutputStream outputStream, Format format) throws IOException {
+        try {
+            if (format == Format.CSV) {
+                exportCsv(outputStream);
+            } else {
+                exportNdjson(outputStream);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Writes every user as one JSON object per line.
+     *
+     * @param outputStream the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    private void exportNdjson(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            streamUsers(resultSet -> {
+                generator.writeStartObject();
+                generator.writeNumberField(COLUMNS[0], resultSet.getLong(1));
+                for (int column = 2; column <= 7; column++) {
+                    generator.writeStringField(COLUMNS[column - 1], resultSet.getString(column));
+                }
+                for (int column = 8; column <= 10; column++) {
+                    Timestamp timestamp = resultSet.getTimestamp(column);
+                    generator.writeFieldName(COLUMNS[column - 1]);
+                    if (timestamp == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(timestamp.getTime());
+                    }
+                }
+                generator.writeStringField(COLUMNS[10], resultSet.getString(11));
+                generator.writeBooleanField(COLUMNS[11], resultSet.getBoolean(12));
+                generator.writeBooleanField(COLUMNS[12], resultSet.getBoolean(13));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }, generator::flush);
+        }
+    }
+
+    /**
+     * Writes every user as one CSV line, after a header line.
+     *
+     * @param outputStream the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    private void exportCsv(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        streamUsers(resultSet -> {
+            for (int column = 1; column <= COLUMNS.length; column++) {
+                if (column > 1) {
+                    writer.write(',');
+                }
+                if (column >= 8 && column <= 10) {
+                    Timestamp timestamp = resultSet.getTimestamp(column);
+                    writer.write(timestamp == null ? "" : timestamp.toInstant().toString());
+                } else if (column >= 12) {
+                    writer.write(String.valueOf(resultSet.getBoolean(column)));
+                } else {
+                    writeCsvValue(writer, resultSet.getString(column));
+                }
+            }
+            writer.write("\r\n");
+        }, writer::flush);
+        writer.flush();
+    }
+
+    /**
+     * Runs the user query in a read-only transaction and hands every row to the given writer as it is fetched.
+     *
+     * @param rowWriter the writer of one row
+     * @param flusher   flushes what was written so far, called every {@value #FLUSH_EVERY_ROWS} rows
+     */
+    private void streamUsers(RowWriter rowWriter, Flusher flusher) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] rows = {0};
+            jdbcTemplate.query(SELECT_USERS, resultSet -> {
+                try {
+                    rowWriter.write(resultSet);
+                    if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                        flusher.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        });
+    }
+
+    /**
+     * Writes the given value as a CSV field, quoted if it holds a separator, a quote or a line break. A value starting
+     * with a character that makes spreadsheets evaluate it as a formula is prefixed with a single quote.
+     *
+     * @param writer the writer to write to
+     * @param value  the value, or null for an empty field
+     * @throws IOException if writing fails
+     */
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Writes the current row of a result set.
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet resultSet) throws SQLException, IOException;
+    }
+
+    /**
+     * Flushes what was written so far.
+     */
+    @FunctionalInterface
+    private interface Flusher {
+        void flush() throws IOException;
+    }
+}
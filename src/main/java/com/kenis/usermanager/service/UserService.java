@@ -1,6 +1,9 @@
 package com.kenis.usermanager.service;
 
 import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserFilter;
+import com.kenis.usermanager.domain.UserPage;
+import com.kenis.usermanager.domain.UserSummary;
 import com.kenis.usermanager.exception.domain.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -35,11 +38,21 @@ public interface UserService {
 
 
     /**
-     * Returns a list of all registered users.
+     * Returns the summaries of the registered users, in id order, capped at {@code user.list.max-size} users.
      *
-     * @return a list of users
+     * @return a list of user summaries
      */
-    List<User> getUsers();
+    List<UserSummary> getUsers();
+
+    /**
+     * Returns the summaries of one page of the users matching the given filter, in id order.
+     *
+     * @param after  the cursor returned with the previous page, or null for the first page
+     * @param size   the requested page size, capped at {@code user.page.max-size}
+     * @param filter the filter the users must match
+     * @return the page of users
+     */
+    UserPage<UserSummary> getUsers(Long after, int size, UserFilter filter);
 
 
     /**
@@ -50,7 +63,14 @@ public interface UserService {
      */
     User findUserByUsername(String username);
 
-    User getUser(String username) throws UserNotFoundException, BlankFieldException;
+    /**
+     * Finds a user by their id, user id, email address or username.
+     *
+     * @param identifier the id, user id, email address or username of the user
+     * @return the summary of the user
+     * @throws UserNotFoundException if no such user exists
+     */
+    UserSummary getUser(String identifier) throws UserNotFoundException, BlankFieldException;
 
     /**
      * Finds a user by their email address.
@@ -80,7 +100,7 @@ public interface UserService {
             String email,
             String role,
             boolean isNotLocked,
-            boolean isActive, MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException;
+            boolean isActive, MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException, InvalidRoleException;
 
 /**
  * Updates the information for the user with the given username.
@@ -105,7 +125,7 @@ public interface UserService {
             String role,
             boolean isNotLocked,
             boolean isActive,
-            MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException;
+            MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException, InvalidRoleException;
 
     /**
      * Deletes the user with the given ID.
@@ -1,22 +1,37 @@
 package com.kenis.usermanager.service.impl;
 
 import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserIdentity;
+import com.kenis.usermanager.domain.UserFilter;
+import com.kenis.usermanager.domain.UserPage;
 import com.kenis.usermanager.domain.UserPrincipal;
+import com.kenis.usermanager.domain.UserSummary;
 import com.kenis.usermanager.enumeration.Role;
 import com.kenis.usermanager.exception.domain.*;
 import com.kenis.usermanager.repository.UserRepository;
 import com.kenis.usermanager.service.EmailService;
+import com.kenis.usermanager.service.LastLoginRecorder;
 import com.kenis.usermanager.service.LoginAttemptService;
+import com.kenis.usermanager.service.PasswordRehashService;
+import com.kenis.usermanager.service.RefreshTokenService;
+import com.kenis.usermanager.service.TokenEpochService;
+import com.kenis.usermanager.service.UserCache;
 import com.kenis.usermanager.service.UserService;
 import com.kenis.usermanager.utility.FieldsValidations;
+import com.kenis.usermanager.utility.UserIdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -43,13 +58,15 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.apache.commons.lang3.StringUtils.*;
 
 /**
- * Implementation of the {@link UserService} and {@link UserDetailsService} interfaces.
+ * Implementation of the {@link UserService}, {@link UserDetailsService} and {@link UserDetailsPasswordService} interfaces.
  *
  * <p>This class provides methods for managing users and for authenticating users using their usernames.
  * It uses the {@link UserRepository#save(Object)} for storing and retrieving users from the database and the
- * {@link BCryptPasswordEncoder} for encoding user passwords. It also uses the {@link LoginAttemptService}
+ * {@link PasswordEncoder} for encoding user passwords. It also uses the {@link LoginAttemptService}
  * to check whether a user has exceeded the maximum number of login attempts. It also uses the {@link EmailService}
- * to send emails.
+ * to send emails. Lookups go through the {@link UserCache}, except the login, which reads the primary; methods that write a user load it from the repository
+ * and evict it from the cache. Methods that only read users run in read-only transactions, which Hibernate does not
+ * flush or dirty check, and which are routed to the replica database when one is configured.
  *
  * @author Mohamed Ali Kenis
  */
@@ -57,10 +74,10 @@ import static org.apache.commons.lang3.StringUtils.*;
 @Service
 @Transactional
 @Qualifier("UserDetailsService")
-public class UserServiceImpl implements UserService, UserDetailsService {
+public class UserServiceImpl implements UserService, UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordEncoder passwordEncoder;
 
     private final LoginAttemptService loginAttemptService ;
 
@@ -68,6 +85,30 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     private final FieldsValidations validations;
 
+    private final TokenEpochService tokenEpochService;
+
+    private final LastLoginRecorder lastLoginRecorder;
+
+    private final PasswordRehashService passwordRehashService;
+
+    private final UserCache userCache;
+
+    private final UserIdGenerator userIdGenerator;
+
+    private final RefreshTokenService refreshTokenService;
+
+    /**
+     * The maximum number of users returned by {@link #getUsers()}.
+     */
+    @Value("${user.list.max-size:1000}")
+    private int listMaxSize;
+
+    /**
+     * The maximum number of users in one page of {@link #getUsers(Long, int, UserFilter)}.
+     */
+    @Value("${user.page.max-size:100}")
+    private int pageMaxSize;
+
     /**
      * Constructs a new {@code UserServiceImpl} object with the given dependencies.
      *
@@ -76,14 +117,26 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @param loginAttemptService the service for checking login attempts
      * @param emailService        the service for sending emails
      * @param validations          the service for validate blank or empty fields
+     * @param tokenEpochService    the service tracking the token epoch of each user
+     * @param lastLoginRecorder    the write-behind buffer for the last login dates
+     * @param passwordRehashService the service storing rehashed passwords in the background
+     * @param userCache            the cache of users by id, username, email and user id
+     * @param userIdGenerator      the generator of the public ids of new users
+     * @param refreshTokenService  the service revoking the refresh tokens of deleted, locked or disabled users
      */
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, LoginAttemptService loginAttemptService, EmailService emailService, FieldsValidations validations) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, LoginAttemptService loginAttemptService, EmailService emailService, FieldsValidations validations, TokenEpochService tokenEpochService, LastLoginRecorder lastLoginRecorder, PasswordRehashService passwordRehashService, UserCache userCache, UserIdGenerator userIdGenerator, RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.loginAttemptService = loginAttemptService;
         this.emailService = emailService;
         this.validations = validations;
+        this.tokenEpochService = tokenEpochService;
+        this.lastLoginRecorder = lastLoginRecorder;
+        this.passwordRehashService = passwordRehashService;
+        this.userCache = userCache;
+        this.userIdGenerator = userIdGenerator;
+        this.refreshTokenService = refreshTokenService;
     }
 
     /**
@@ -94,9 +147,9 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * user with the specified username using the {@link UserRepository#findUserByUsername(String)}
      * method. If a user with the specified username is not found, it throws a
      * {@link UsernameNotFoundException} with an error message. If a user with the specified username is
-     * found, it updates the user's last login date and saves the updated user to the database using the
-     * {@link UserRepository#save(Object)} method. It then creates a new {@link UserPrincipal} object using
-     * the found user and returns it.
+     * found, it records the login in the {@link LastLoginRecorder}, which writes the last login date to the
+     * database later in a batch. The locked status of the user is only written right away if validating the login
+     * attempt changed it. The user is read past the {@link UserCache} in the read-write transaction of this class, so it always comes from the primary database and never from a stale cached or replica copy. It then creates a new {@link UserPrincipal} object using the found user and returns it.
      *
      * @param username the username of the user to load
      * @return the user details
@@ -104,15 +157,18 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+        User user = userCache.findUncachedUserByUsername(username);
         if (user == null) {
             log.error(NO_USER_FOUND_BY_USERNAME + username);
             throw new UsernameNotFoundException(NO_USER_FOUND_BY_USERNAME  + username);
         } else {
+            boolean wasNotLocked = user.getIsNotLocked();
             validateLoginAttempt(user);
-            user.setLastLoginDate(user.getLastLoginDate());
-            user.setLastLoginDate(new Date());
-            userRepository.save(user);
+            if (wasNotLocked != user.getIsNotLocked()) {
+                userCache.evict(user);
+                userRepository.updateIsNotLocked(user.getId(), user.getIsNotLocked());
+            }
+            lastLoginRecorder.recordLogin(user.getId(), user.getLastLoginDate(), new Date());
             UserPrincipal userPrincipal = new UserPrincipal(user);
             log.info(RETURNING_FOUND_USER_BY_USERNAME + username);
             return userPrincipal;
@@ -120,11 +176,29 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     }
 
+    /**
+     * Stores the new password hash of a user who just logged in with an outdated one.
+     *
+     * <p>This method is called by the authentication provider after a successful login, when the password encoder
+     * reports that the stored hash should be upgraded. The hash is written in the background by the
+     * {@link PasswordRehashService}, and the user loaded for the login is left untouched.
+     *
+     * @param user        the user who logged in
+     * @param newPassword the password of the user, hashed in the current format
+     * @return the user who logged in
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        passwordRehashService.rehashPassword(user.getUsername(), user.getPassword(), newPassword);
+        return user;
+    }
+
 
     /**
      * Registers a new user with the given information.
      * This method checks that the given username and email address are not already in use,
-     * and throws an exception if they are.
+     * and throws an exception if they are. A user registered concurrently with the same username or email address is
+     * caught by the unique indexes when the user is saved, and reported with the same exceptions.
      *
      * @param firstName the first name of the user
      * @param lastName  the last name of the user
@@ -137,12 +211,13 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @throws MessagingException     if there was a problem sending the email with the new password
      */
     @Override
+    @Transactional(rollbackFor = {UsernameExistException.class, EmailExistException.class})
     public User register(String firstName, String lastName, String username, String email)
             throws UserNotFoundException, EmailExistException, UsernameExistException, MessagingException, BlankFieldException {
         validations.validateFieldsRegistration(new FieldsValidations.FieldDTO(username,email,firstName,lastName));
         validateNewUserNameAndEmail(EMPTY, username, email);
         String password = generatePassword();
-        String userId = generateUserId();
+        String userId = userIdGenerator.generateUserId();
         String encodedPassword = encodePassword(password);
         User user = new User();
         user.setFirstName(firstName);
@@ -155,9 +230,8 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setIsActive(true);
         user.setIsNotLocked(true);
         user.setRole(ROLE_USER.name());
-        user.setAuthorities(ROLE_USER.getAuthorities());
         user.setProfileImageUrl(getTemporaryProfileImageUrl(username));
-        userRepository.save(user);
+        saveUser(user);
         emailService.sendNewPasswordEmail(firstName,password,email);
         log.info("New user password : " + password);
 
@@ -169,8 +243,8 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      *
      * <p>This method generates a temporary password and user ID for the new user, and encodes the password using
      * the {@link #encodePassword(String)} method. It then creates a new {@link User} object with the given
-     * information and the generated password and user ID, and sets the user's role and authorities based on the
-     * given role. It also sets the user's profile image URL to a temporary URL and saves the user to the
+     * information and the generated password and user ID, and sets the user's role, which determines their
+     * authorities. It also sets the user's profile image URL to a temporary URL and saves the user to the
      * database using the {@link UserRepository save(User)} method. Finally, it saves the given profile image
      * to the server using the {@link #saveProfileImage(User, MultipartFile)} method.
      *
@@ -189,11 +263,12 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @throws IOException if there is an error saving the profile image
      */
     @Override
-    public User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNotLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException {
+    @Transactional(rollbackFor = {UsernameExistException.class, EmailExistException.class})
+    public User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNotLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException, InvalidRoleException {
         validateUserFields(firstName,lastName,username,email,role,isNotLocked,isActive);
         validateNewUserNameAndEmail(EMPTY, username,email);
         String password = generatePassword();
-        String userId = generateUserId();
+        String userId = userIdGenerator.generateUserId();
         String encodedPassword = encodePassword(password);
         User user = new User();
         user.setUserId(userId);
@@ -206,9 +281,8 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setIsNotLocked(isNotLocked);
         user.setIsActive(isActive);
         user.setRole(getRoleEnumName(role).name());
-        user.setAuthorities(getRoleEnumName(role).getAuthorities());
         user.setProfileImageUrl(getTemporaryProfileImageUrl(username));
-        userRepository.save(user);
+        saveUser(user);
         saveProfileImage(user, profileImage);
         return user;
     }
@@ -220,9 +294,13 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * <p>This method first retrieves & validate the user with the given username using the
      * {@link #validateNewUserNameAndEmail(String, String, String)} method, which also checks that the
      * new username and email address are not already in use. It then updates the user's first name, last name,
-     * username, email address, locked status, active status, role, and authorities with the given values, and
+     * username, email address, locked status, active status, and role with the given values, and
      * saves the updated user to the database using the {@link UserRepository save(User)} method. It also saves
      * the given profile image to the server using the {@link #saveProfileImage(User, MultipartFile)} method.
+     * If the user is locked or disabled, or their role or username changes, their token epoch is advanced using
+     * {@link TokenEpochService#advanceTokenEpoch(User)} so that the tokens already issued to them are rejected. If the
+     * user is locked or disabled, their refresh tokens are also revoked using
+     * {@link RefreshTokenService#revokeRefreshTokens(Long)}.
      *
      * @param currentUsername the current username of the user to be updated
      * @param newFirstName the new first name of the user
@@ -240,10 +318,17 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @throws IOException if there is an error saving the profile image
      */
     @Override
-    public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNotLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException {
+    @Transactional(rollbackFor = {UsernameExistException.class, EmailExistException.class})
+    public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNotLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException, BlankFieldException, InvalidRoleException {
         validateUserFields(newFirstName,newLastName,newUsername,newEmail,role,isNotLocked,isActive);
-        User currentUser = validateNewUserNameAndEmail(currentUsername, newUsername,newEmail);
+        validateNewUserNameAndEmail(currentUsername, newUsername,newEmail);
+        User currentUser = userRepository.findUserByUsername(currentUsername);
         assert currentUser != null;
+        userCache.evict(currentUser);
+        boolean locksOut = (currentUser.getIsNotLocked() && !isNotLocked) || (currentUser.getIsActive() && !isActive);
+        boolean invalidatesTokens = locksOut
+                || !getRoleEnumName(role).name().equals(currentUser.getRole())
+                || !currentUser.getUsername().equals(newUsername);
         currentUser.setFirstName(newFirstName);
         currentUser.setLastName(newLastName);
         currentUser.setUsername(newUsername);
@@ -251,19 +336,31 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         currentUser.setIsNotLocked(isNotLocked);
         currentUser.setIsActive(isActive);
         currentUser.setRole(getRoleEnumName(role).name());
-        currentUser.setAuthorities(getRoleEnumName(role).getAuthorities());
-        userRepository.save(currentUser);
+        if (invalidatesTokens) {
+            tokenEpochService.advanceTokenEpoch(currentUser);
+        }
+        if (locksOut) {
+            refreshTokenService.revokeRefreshTokens(currentUser.getId());
+        }
+        saveUser(currentUser);
         saveProfileImage(currentUser, profileImage);
         return currentUser;
     }
 
     /**
-     * Deletes the user with the given ID.
+     * Deletes the user with the given ID, rejects every token already issued to them and deletes their refresh
+     * tokens.
      *
      * @param id the ID of the user to delete
      */
     @Override
     public void deleteUser(Long id) {
+        User user = userRepository.findUserById(id);
+        if (user != null) {
+            tokenEpochService.revokeAllTokens(user.getId());
+            refreshTokenService.revokeRefreshTokens(user.getId());
+            userCache.evict(user);
+        }
         userRepository.deleteById(id);
 
     }
@@ -292,6 +389,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
         String password = generatePassword();
         user.setPassword(encodePassword(password));
+        userCache.evict(user);
         userRepository.save(user);
         emailService.sendNewPasswordEmail(user.getFirstName(),password,email);
     }
@@ -299,9 +397,9 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     /**
      * Updates the profile image for the user with the given username.
      *
-     * <p>This method first retrieves & validate the user with the given username using the
-     * {@link #validateNewUserNameAndEmail(String, String, String)} method. It then saves the given profile
-     * image to the server using the {@link #saveProfileImage(User, MultipartFile)} method.
+     * <p>This method first retrieves the user with the given username, and throws an exception if there is none.
+     * It then saves the given profile image to the server using the {@link #saveProfileImage(User, MultipartFile)}
+     * method.
      *
      * @param username the username of the user to update the profile image for
      * @param newProfileImage the new profile image for the user
@@ -313,20 +411,49 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      */
     @Override
     public User updateProfileImage(String username, MultipartFile newProfileImage) throws UserNotFoundException, EmailExistException, UsernameExistException, IOException {
-        User user = validateNewUserNameAndEmail(username,null,null);
+        User user = userRepository.findUserByUsername(username);
+        if (user == null) {
+            throw new UserNotFoundException(NO_USER_FOUND_BY_USERNAME + username);
+        }
         saveProfileImage(user,newProfileImage);
         return user;
     }
 
 
     /**
-     * This method retrieves a list of all registered users from the database.
+     * This method retrieves the summaries of the registered users from the database, in id order. The list is capped
+     * at {@code user.list.max-size} users; use {@link #getUsers(Long, int, UserFilter)} to page through all of them.
+     * Only the columns of a {@link UserSummary} are read, and no user entity is loaded.
+     *
+     * @return a list of user summaries
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsers() {
+        return userRepository.findUserSummaries(PageRequest.of(0, listMaxSize));
+    }
+
+    /**
+     * This method retrieves the summaries of one page of the users matching the given filter, in id order.
      *
-     * @return a list of users
+     * <p>One more user than the page size is read, to tell whether another page follows without counting the
+     * matching users. The cursor of the next page is the id of the last user of this page.
+     *
+     * @param after  the cursor returned with the previous page, or null for the first page
+     * @param size   the requested page size, capped at {@code user.page.max-size}
+     * @param filter the filter the users must match
+     * @return the page of users
      */
     @Override
-    public List<User> getUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public UserPage<UserSummary> getUsers(Long after, int size, UserFilter filter) {
+        int pageSize = Math.max(1, Math.min(size, pageMaxSize));
+        List<UserSummary> users = userRepository.findUsersAfter(after, filter, pageSize + 1);
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            return new UserPage<>(users, users.get(pageSize - 1).getId());
+        }
+        return new UserPage<>(users, null);
     }
 
     /**
@@ -336,8 +463,9 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @return the user, or null if no such user exists
      */
     @Override
+    @Transactional(readOnly = true)
     public User findUserByUsername(String username) {
-        return userRepository.findUserByUsername(username);
+        return userCache.findUserByUsername(username);
     }
 
     /**
@@ -347,48 +475,40 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @return the user, or null if no such user exists
      */
     @Override
+    @Transactional(readOnly = true)
     public User findUserByEmail(String email) {
-        return userRepository.findUserByEmail(email);
+        return userCache.findUserByEmail(email);
     }
 
 
+    /**
+     * This method finds a user by their id, user id, email address or username, through the {@link UserCache}.
+     *
+     * @param identifier the id, user id, email address or username of the user
+     * @return the summary of the user
+     * @throws UserNotFoundException if no such user exists
+     */
     @Override
-    public User getUser( String identifier) throws UserNotFoundException, BlankFieldException {
+    @Transactional(readOnly = true)
+    public UserSummary getUser( String identifier) throws UserNotFoundException, BlankFieldException {
         validations.validationField("identifier", identifier);
         User user = null;
         try {
             Long id = Long.parseLong(identifier);
-            user = userRepository.findUserById(id);
+            user = userCache.findUserById(id);
         } catch (NumberFormatException e) {
             if (identifier.startsWith("ID_")) {
-                user = userRepository.findUserByUserId(identifier);
+                user = userCache.findUserByUserId(identifier);
             }else if (identifier.contains("@")) {
-                user = userRepository.findUserByEmail(identifier);
+                user = userCache.findUserByEmail(identifier);
             }else if(identifier.matches("^[a-zA-Z0-9._-]+$")) {
-                user = userRepository.findUserByUsername(identifier);
+                user = userCache.findUserByUsername(identifier);
             }
         }
         if (user == null) {
             throw new UserNotFoundException(NO_USER_FOUND_BY_IDENTIFIER + identifier);
         }
-        return user;
-    }
-
-    /**
-     * Generates a unique user ID that does not exist in the database.
-     *
-     * @return the generated unique user ID
-     */
-    private String generateUserId() {
-        String  preFix = "ID_";
-        String userId = RandomStringUtils.randomNumeric(10);
-        User currentUser = userRepository.findUserByUserId(userId);
-        while (currentUser != null) {
-            userId = RandomStringUtils.randomNumeric(10);
-            currentUser = userRepository.findUserByUserId(userId);
-        }
-        userId = preFix + userId;
-        return userId;
+        return UserSummary.of(user);
     }
 
     /**
@@ -427,45 +547,87 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * If the current username is blank, this method checks that the new username and email address are not
      * already in use by any user, and throws an exception if they are.
      *
+     * <p>The current user and the users holding the new username or email address are read in a single query,
+     * which only returns their ids, usernames and email addresses. The unique indexes on the username and the email
+     * address remain the final guard against users saved concurrently, see {@link #saveUser(User)}.
+     *
      * @param currentUsername the current username of the user (maybe blank)
      * @param newUsername     the new username to validate
      * @param newEmail        the new email address to validate
-     * @return the current user, if the current username is not blank
      * @throws UserNotFoundException  if the current username is not blank and no such user exists
      * @throws UsernameExistException if the new username is already in use
      * @throws EmailExistException    if the new email address is already in use
      */
-    private User validateNewUserNameAndEmail(String currentUsername, String newUsername, String newEmail)
+    private void validateNewUserNameAndEmail(String currentUsername, String newUsername, String newEmail)
             throws UserNotFoundException, UsernameExistException, EmailExistException {
-        User userByNewUsername = findUserByUsername(newUsername);
-        User userByNewEmail = findUserByEmail(newEmail);
-        if (isNotBlank(currentUsername)) {
-            User currentUser = findUserByUsername(currentUsername);
-            if (currentUser == null) {
+        String current = isNotBlank(currentUsername) ? currentUsername : null;
+        List<UserIdentity> users = userRepository.findUserIdentities(current, newUsername, newEmail);
+        Long currentUserId = null;
+        if (current != null) {
+            for (UserIdentity user : users) {
+                if (current.equals(user.getUsername())) {
+                    currentUserId = user.getId();
+                }
+            }
+            if (currentUserId == null) {
                 throw new UserNotFoundException(NO_USER_FOUND_BY_USERNAME + currentUsername);
             }
-
-            if (userByNewUsername != null && !currentUser.getId().equals(userByNewUsername.getId())) {
+        }
+        for (UserIdentity user : users) {
+            if (newUsername != null && newUsername.equals(user.getUsername()) && !user.getId().equals(currentUserId)) {
                 throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
             }
-
-            if (userByNewEmail != null && !currentUser.getId().equals(userByNewEmail.getId())) {
+        }
+        for (UserIdentity user : users) {
+            if (newEmail != null && newEmail.equals(user.getEmail()) && !user.getId().equals(currentUserId)) {
                 throw new EmailExistException(EMAIL_ALREADY_EXISTS);
             }
-            return currentUser;
-        } else {
+        }
+    }
 
-            if (userByNewUsername != null) {
+    /**
+     * Saves the given user and flushes it, so that a username or email address taken by a user saved concurrently
+     * is reported here rather than when the transaction commits.
+     *
+     * @param user the user to save
+     * @throws UsernameExistException if the unique index on the username rejected the user
+     * @throws EmailExistException    if the unique index on the email address rejected the user
+     * @throws UserIdExistException   if the unique index on the user id rejected the user, because two nodes share a
+     *                                node id
+     */
+    private void saveUser(User user) throws UsernameExistException, EmailExistException {
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String constraintName = getConstraintName(e);
+            if (USERNAME_UNIQUE_CONSTRAINT.equals(constraintName)) {
                 throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
             }
-
-            if (userByNewEmail != null) {
+            if (EMAIL_UNIQUE_CONSTRAINT.equals(constraintName)) {
                 throw new EmailExistException(EMAIL_ALREADY_EXISTS);
             }
-            return null;
+            if (USER_ID_UNIQUE_CONSTRAINT.equals(constraintName)) {
+                throw new UserIdExistException(USER_ID_ALREADY_EXISTS);
+            }
+            throw e;
         }
     }
 
+    /**
+     * Returns the name of the database constraint that caused the given exception.
+     *
+     * @param e the exception
+     * @return the name of the violated constraint, or null if it is unknown
+     */
+    private static String getConstraintName(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return ((ConstraintViolationException) cause).getConstraintName();
+            }
+        }
+        return null;
+    }
+
     /**
      * Validates the login attempt for the given user.
      *
@@ -511,6 +673,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
             Files.deleteIfExists(Paths.get(userFolder + user.getUsername() + DOT + JPG_EXTENSION));
             Files.copy(profileImage.getInputStream(),userFolder.resolve(user.getUsername() + DOT + JPG_EXTENSION), REPLACE_EXISTING);
             user.setProfileImageUrl(setProfileImageUrl(user.getUsername()));
+            userCache.evict(user);
             userRepository.save(user);
             log.info(FILE_SAVED_IN_FILE_SYSTEM + profileImage.getOriginalFilename());
         }
@@ -538,7 +701,14 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         return Role.valueOf(role.toUpperCase());
     }
 
-    private void validateUserFields(String firstName, String lastName, String username, String email, String role, boolean isNotLocked, boolean isActive) throws BlankFieldException {
+    /**
+     * Validates the fields of a user being added or updated: none may be blank, and the role must name a
+     * {@link Role}, so that no user is ever stored with a role its authorities cannot be derived from.
+     *
+     * @throws BlankFieldException  if a field is blank
+     * @throws InvalidRoleException if the role is unknown
+     */
+    private void validateUserFields(String firstName, String lastName, String username, String email, String role, boolean isNotLocked, boolean isActive) throws BlankFieldException, InvalidRoleException {
         validations.validateFields(List.of(
                 new Field("First Name", firstName),
                 new Field("Last Name", lastName),
@@ -548,6 +718,11 @@ public class UserServiceImpl implements UserService, UserDetailsService {
                 new Field("isNotLocked", String.valueOf(isNotLocked)),
                 new Field("isActive", String.valueOf(isActive))
         ));
+        try {
+            getRoleEnumName(role);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRoleException(UNKNOWN_ROLE_MESSAGE + role);
+        }
     }
 
 }
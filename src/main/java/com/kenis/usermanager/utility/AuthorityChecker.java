@@ -0,0 +1,29 @@
+package com.kenis.usermanager.utility;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authorization checks for {@code @PreAuthorize} expressions, such as
+ * {@code @PreAuthorize("@authorityChecker.hasAuthority('user:delete')")}.
+ * <p>
+ * Unlike the built-in {@code hasAuthority} expression, which copies the authorities of the current user into a set of
+ * strings on every check, this checks the bitmask of the shared {@link AuthoritySet} of the current user.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Component
+public class AuthorityChecker {
+
+    /**
+     * Returns true if the current user has been granted the given authority, false otherwise.
+     *
+     * @param authority the name of the authority
+     * @return true if the authority is granted, false otherwise
+     */
+    public boolean hasAuthority(String authority) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && AuthorityRegistry.hasAuthority(authentication.getAuthorities(), authority);
+    }
+}
@@ -0,0 +1,168 @@
+package com.kenis.usermanager.utility;
+
+import com.kenis.usermanager.enumeration.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.kenis.usermanager.constant.Authority.SUPER_ADMIN_AUTHORITIES;
+
+/**
+ * <h3> Registry of the granted authority sets of the application.
+ *
+ * <p> There are only five {@link Role} values, each with a fixed array of authorities. Instead of building new
+ * {@link SimpleGrantedAuthority} lists every time a user is authenticated or a token is verified, this registry builds
+ * one immutable {@link AuthoritySet} per combination of known authorities when the class is loaded, and hands out the
+ * same instance every time. Each known authority is given one bit, so that authorization checks compare bitmasks
+ * instead of strings.
+ *
+ * <p> Authority sets holding authorities the registry does not know, which can only come from tokens issued with
+ * another configuration, are interned on first use.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public final class AuthorityRegistry {
+    /**
+     * Every known authority, in bit order: the authority at index {@code i} is given the bit {@code 1 << i}.
+     */
+    private static final String[] KNOWN_AUTHORITIES = SUPER_ADMIN_AUTHORITIES.clone();
+
+    private static final Map<String, Integer> BITS = new HashMap<>();
+
+    private static final GrantedAuthority[] GRANTED_AUTHORITIES = new GrantedAuthority[KNOWN_AUTHORITIES.length];
+
+    /**
+     * The authority set of every bitmask of known authorities, indexed by bitmask.
+     */
+    private static final AuthoritySet[] BY_MASK = new AuthoritySet[1 << KNOWN_AUTHORITIES.length];
+
+    private static final Map<Role, AuthoritySet> BY_ROLE = new EnumMap<>(Role.class);
+
+    /**
+     * The interned authority sets holding authorities the registry does not know, by authority names.
+     */
+    private static final Map<List<String>, AuthoritySet> INTERNED = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < KNOWN_AUTHORITIES.length; i++) {
+            BITS.put(KNOWN_AUTHORITIES[i], 1 << i);
+            GRANTED_AUTHORITIES[i] = new SimpleGrantedAuthority(KNOWN_AUTHORITIES[i]);
+        }
+        for (int mask = 0; mask < BY_MASK.length; mask++) {
+            int size = Integer.bitCount(mask);
+            GrantedAuthority[] authorities = new GrantedAuthority[size];
+            String[] names = new String[size];
+            int index = 0;
+            for (int i = 0; i < KNOWN_AUTHORITIES.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    authorities[index] = GRANTED_AUTHORITIES[i];
+                    names[index++] = KNOWN_AUTHORITIES[i];
+                }
+            }
+            BY_MASK[mask] = new AuthoritySet(authorities, names, mask);
+        }
+        for (Role role : Role.values()) {
+            BY_ROLE.put(role, intern(role.getAuthorities()));
+        }
+    }
+
+    private AuthorityRegistry() {
+    }
+
+    /**
+     * Returns the precomputed authority set of the given role.
+     *
+     * @param role the role
+     * @return the authority set of the role
+     */
+    public static AuthoritySet forRole(Role role) {
+        return BY_ROLE.get(role);
+    }
+
+    /**
+     * Returns the precomputed authority set of the given bitmask of known authorities.
+     *
+     * @param mask the bitmask of known authorities
+     * @return the authority set of the bitmask
+     * @throws IllegalArgumentException if the bitmask holds unknown bits
+     */
+    public static AuthoritySet forMask(int mask) {
+        if (mask < 0 || mask >= BY_MASK.length) {
+            throw new IllegalArgumentException("Unknown authority mask: " + mask);
+        }
+        return BY_MASK[mask];
+    }
+
+    /**
+     * Returns the shared authority set holding the given authorities.
+     *
+     * @param names the names of the authorities
+     * @return the shared authority set holding the authorities
+     */
+    public static AuthoritySet intern(String[] names) {
+        int mask = 0;
+        for (String name : names) {
+            Integer bit = BITS.get(name);
+            if (bit == null || (mask & bit) != 0) {
+                return INTERNED.computeIfAbsent(List.of(names), AuthorityRegistry::newAuthoritySet);
+            }
+            mask |= bit;
+        }
+        return BY_MASK[mask];
+    }
+
+    /**
+     * Returns the bit of the given known authority, or 0 if the authority is unknown.
+     *
+     * @param authority the name of the authority
+     * @return the bit of the authority, or 0
+     */
+    public static int bitOf(String authority) {
+        Integer bit = BITS.get(authority);
+        return bit == null ? 0 : bit;
+    }
+
+    /**
+     * Returns true if the given authorities grant the given authority, false otherwise. Authority sets from this
+     * registry are checked with a bitmask test; any other collection is searched by name.
+     *
+     * @param authorities the granted authorities
+     * @param authority   the name of the authority to check
+     * @return true if the authority is granted, false otherwise
+     */
+    public static boolean hasAuthority(Collection<? extends GrantedAuthority> authorities, String authority) {
+        int bit = bitOf(authority);
+        if (authorities instanceof AuthoritySet && bit != 0) {
+            return ((AuthoritySet) authorities).grants(bit);
+        }
+        for (GrantedAuthority grantedAuthority : authorities) {
+            if (authority.equals(grantedAuthority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a new authority set holding the given authorities, for authorities the registry does not know.
+     *
+     * @param names the names of the authorities
+     * @return a new authority set
+     */
+    private static AuthoritySet newAuthoritySet(List<String> names) {
+        GrantedAuthority[] authorities = new GrantedAuthority[names.size()];
+        int mask = 0;
+        for (int i = 0; i < authorities.length; i++) {
+            int bit = bitOf(names.get(i));
+            authorities[i] = bit == 0 ? new SimpleGrantedAuthority(names.get(i)) : GRANTED_AUTHORITIES[Integer.numberOfTrailingZeros(bit)];
+            mask |= bit;
+        }
+        return new AuthoritySet(authorities, names.toArray(new String[0]), mask);
+    }
+}
@@ -0,0 +1,74 @@
+package com.kenis.usermanager.utility;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, shared list of granted authorities, together with the names of the authorities and a bitmask of the
+ * known ones.
+ * <p>
+ * Instances are only created by the {@link AuthorityRegistry}, which precomputes one per role and interns the ones
+ * decoded from tokens, so the same instance is handed out for the same set of authorities. Checking whether an
+ * authority is granted is a single bitmask test.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+public final class AuthoritySet extends AbstractList<GrantedAuthority> implements RandomAccess {
+    private final GrantedAuthority[] authorities;
+    private final String[] names;
+    private final int mask;
+
+    /**
+     * Constructs a new {@code AuthoritySet}.
+     *
+     * @param authorities the granted authorities
+     * @param names       the names of the granted authorities, in the same order
+     * @param mask        the bitmask of the known authorities in the set
+     */
+    AuthoritySet(GrantedAuthority[] authorities, String[] names, int mask) {
+        this.authorities = authorities;
+        this.names = names;
+        this.mask = mask;
+    }
+
+    @Override
+    public GrantedAuthority get(int index) {
+        return authorities[index];
+    }
+
+    @Override
+    public int size() {
+        return authorities.length;
+    }
+
+    /**
+     * Returns the bitmask of the known authorities in the set.
+     *
+     * @return the bitmask of the authorities
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the names of the authorities in the set. The array is shared and must not be modified.
+     *
+     * @return the names of the authorities
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Returns true if every authority of the given bitmask is granted by the set, false otherwise.
+     *
+     * @param authorityMask the bitmask of the authorities to check
+     * @return true if every authority of the bitmask is granted, false otherwise
+     */
+    public boolean grants(int authorityMask) {
+        return authorityMask != 0 && (mask & authorityMask) == authorityMask;
+    }
+}
@@ -0,0 +1,237 @@
+package com.kenis.usermanager.utility;
+
+import com.kenis.usermanager.exception.domain.PasswordEncoderOverloadedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.kenis.usermanager.constant.SecurityConstant.PASSWORD_ENCODER_OVERLOADED;
+
+/**
+ * <h3> Password encoder that hashes and matches passwords on a dedicated, bounded pool of workers.
+ *
+ * <p> Hashing a password with bcrypt is deliberately slow and entirely CPU-bound. Run on the servlet threads, a burst
+ * of logins or registrations would occupy every one of them and starve the cheap endpoints. Every call is therefore
+ * handed to a pool with one worker per core ({@code password.encoder.threads}) in front of which at most
+ * {@code password.encoder.queue-capacity} calls may wait. A call that finds the queue full fails at once with a
+ * {@link PasswordEncoderOverloadedException}, which is answered with a 503 and a {@code Retry-After} header.
+ *
+ * <p> The time spent waiting in the queue and the time spent hashing are published as the
+ * {@code password.encoder.queue.wait} and {@code password.encoder.hash} timers, tagged with the operation.
+ *
+ * <p> New hashes are prefixed with the id of their algorithm ({@code {bcrypt}}), so that stored hashes can later be
+ * migrated to another algorithm. Hashes without a prefix are the bcrypt hashes stored before prefixes were used. The
+ * bcrypt cost is {@code password.encoder.bcrypt-strength}, unless it is calibrated by the
+ * {@link PasswordHashCalibrator}, at start-up ({@code password.encoder.calibrate-on-startup}) or on demand.
+ * {@link #upgradeEncoding(String)} reports the hashes that are unprefixed, of another algorithm or weaker than the
+ * current cost, so that they are rehashed on the next successful login.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private static final String ENCODE = "encode";
+    private static final String MATCHES = "matches";
+    private static final String BCRYPT = "bcrypt";
+    private static final String PBKDF2 = "pbkdf2";
+    private static final String ARGON2 = "argon2";
+    private static final String ARGON2_GENERATOR = "org.bouncycastle.crypto.generators.Argon2BytesGenerator";
+
+    private final PasswordHashCalibrator calibrator;
+
+    private final boolean calibrateOnStartup;
+
+    /**
+     * The encoder doing the actual hashing. It is replaced whenever the bcrypt cost changes.
+     */
+    private volatile PasswordEncoder delegate;
+
+    private volatile int strength;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long retryAfterSeconds;
+
+    private final Timer encodeWait;
+    private final Timer encodeHash;
+    private final Timer matchesWait;
+    private final Timer matchesHash;
+
+    /**
+     * Constructs a new {@code BoundedPasswordEncoder}.
+     *
+     * @param threads           the number of password workers, or 0 for one per available core
+     * @param queueCapacity     the maximum number of calls waiting for a worker
+     * @param retryAfterSeconds  the number of seconds a rejected client is asked to wait before retrying
+     * @param strength           the bcrypt cost factor used until the encoder is calibrated
+     * @param calibrateOnStartup whether to calibrate the bcrypt cost factor when the bean starts
+     * @param calibrator         the calibrator measuring bcrypt on this host
+     * @param meterRegistry      the registry the timers are published to
+     */
+    public BoundedPasswordEncoder(@Value("${password.encoder.threads:0}") int threads,
+                                  @Value("${password.encoder.queue-capacity:64}") int queueCapacity,
+                                  @Value("${password.encoder.retry-after:1}") long retryAfterSeconds,
+                                  @Value("${password.encoder.bcrypt-strength:10}") int strength,
+                                  @Value("${password.encoder.calibrate-on-startup:false}") boolean calibrateOnStartup,
+                                  PasswordHashCalibrator calibrator,
+                                  MeterRegistry meterRegistry) {
+        this.calibrator = calibrator;
+        this.calibrateOnStartup = calibrateOnStartup;
+        setStrength(strength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-encoder-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.encodeWait = Timer.builder("password.encoder.queue.wait").tag("operation", ENCODE).register(meterRegistry);
+        this.encodeHash = Timer.builder("password.encoder.hash").tag("operation", ENCODE).register(meterRegistry);
+        this.matchesWait = Timer.builder("password.encoder.queue.wait").tag("operation", MATCHES).register(meterRegistry);
+        this.matchesHash = Timer.builder("password.encoder.hash").tag("operation", MATCHES).register(meterRegistry);
+        Gauge.builder("password.encoder.queue.size", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.encoder.bcrypt.strength", this, BoundedPasswordEncoder::getStrength).register(meterRegistry);
+    }
+
+    /**
+     * Calibrates the bcrypt cost factor when the bean starts, if {@code password.encoder.calibrate-on-startup} is set.
+     */
+    @PostConstruct
+    public void init() {
+        if (calibrateOnStartup) {
+            calibrate();
+        }
+    }
+
+    /**
+     * Measures bcrypt on this host and hashes new passwords with the strongest cost that meets the latency target.
+     *
+     * @return the new bcrypt cost factor
+     */
+    public int calibrate() {
+        int calibratedStrength = calibrator.calibrate();
+        setStrength(calibratedStrength);
+        return calibratedStrength;
+    }
+
+    /**
+     * Returns the bcrypt cost factor new passwords are hashed with.
+     *
+     * @return the bcrypt cost factor
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> delegate.encode(rawPassword), encodeWait, encodeHash);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> delegate.matches(rawPassword, encodedPassword), matchesWait, matchesHash);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Stops the password workers when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Hashes new passwords with bcrypt at the given cost from now on.
+     *
+     * @param strength the bcrypt cost factor
+     */
+    private synchronized void setStrength(int strength) {
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(strength);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bCryptPasswordEncoder);
+        encoders.put(PBKDF2, new Pbkdf2PasswordEncoder());
+        if (ClassUtils.isPresent(ARGON2_GENERATOR, getClass().getClassLoader())) {
+            encoders.put(ARGON2, new Argon2PasswordEncoder());
+        }
+        DelegatingPasswordEncoder delegatingPasswordEncoder = new DelegatingPasswordEncoder(BCRYPT, encoders);
+        delegatingPasswordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        this.strength = strength;
+        this.delegate = delegatingPasswordEncoder;
+    }
+
+    /**
+     * Runs the given task on a password worker and waits for its result, recording how long it waited and ran.
+     *
+     * @param task      the hashing task
+     * @param waitTimer the timer recording the time spent in the queue
+     * @param hashTimer the timer recording the time spent hashing
+     * @param <T>       the type of the result
+     * @return the result of the task
+     * @throws PasswordEncoderOverloadedException if the queue is full
+     */
+    private <T> T submit(Callable<T> task, Timer waitTimer, Timer hashTimer) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.call();
+                } finally {
+                    hashTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn(PASSWORD_ENCODER_OVERLOADED);
+            throw new PasswordEncoderOverloadedException(PASSWORD_ENCODER_OVERLOADED, retryAfterSeconds);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
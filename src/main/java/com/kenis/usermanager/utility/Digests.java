@@ -0,0 +1,34 @@
+package com.kenis.usermanager.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Helper methods for digesting secrets such as tokens before they are used as cache or database keys, so that the
+ * secrets themselves are never stored.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public final class Digests {
+    private static final String SHA_256 = "SHA-256";
+
+    private Digests() {
+    }
+
+    /**
+     * Returns the Base64 encoded SHA-256 digest of the given value.
+     *
+     * @param value the value to digest
+     * @return the digest of the value
+     */
+    public static String sha256(String value) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(SHA_256);
+            return Base64.getEncoder().encodeToString(messageDigest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,27 +1,26 @@
 package com.kenis.usermanager.utility;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import static com.kenis.usermanager.constant.SecurityConstant.*;
-import static java.util.Arrays.stream;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.kenis.usermanager.domain.UserPrincipal;
+import com.kenis.usermanager.domain.VerifiedToken;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 /**
  * A class that provides utility methods for generating and verifying JWT tokens.
@@ -32,122 +31,186 @@ import java.util.stream.Collectors;
 @Component
 public class JWTTokenProvider {
 
-    @Value("${jwt.secret}")
+    @Value("${jwt.secret:}")
     private String secret;
 
-    //= Private Methods ==
+    /**
+     * Whether issued tokens carry their authorities as a bitmask in the compact {@code amask} claim instead of an
+     * array of names in the {@code authorities} claim. Both formats are always accepted when verifying.
+     */
+    @Value("${jwt.token.compact-authorities:false}")
+    private boolean compactAuthorities;
+
+    /**
+     * Whether legacy HMAC512 tokens signed with {@code jwt.secret} are still accepted, for one legacy token lifetime
+     * after start-up. Off by default, so that the shared secret cannot be used to forge tokens.
+     */
+    @Value("${jwt.legacy-tokens.enabled:false}")
+    private boolean legacyTokensEnabled;
 
     /**
-     * Returns an array of claims extracted from the given JWT token.
+     * The verifier for legacy HMAC512 tokens issued before key rotation was introduced, or null if legacy tokens are
+     * not accepted. Such tokens carry no {@code kid} header.
+     */
+    private JWTVerifier legacyVerifier;
+
+    /**
+     * The time until which legacy tokens are accepted, in milliseconds since the epoch. Legacy tokens were issued for
+     * {@link com.kenis.usermanager.constant.SecurityConstant#LEGACY_EXPIRATION_TIME}, so any legacy token issued before
+     * start-up has expired by then.
+     */
+    private long legacyTokensAcceptedUntil;
+
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    private final JwtKeyRing keyRing;
+
+    /**
+     * Creates a new instance of the JWTTokenProvider class.
      *
-     * @param token the JWT token
-     * @return an array of claims extracted from the given JWT token
+     * @param verifiedTokenCache the cache of already verified tokens
+     * @param keyRing            the ring of keys used to sign and verify the tokens
      */
-    private String[]  getClaimsFromToken(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier
-                .verify(token)
-                .getClaim(AUTHORITIES)
-                .asArray(String.class);
+    public JWTTokenProvider(VerifiedTokenCache verifiedTokenCache, JwtKeyRing keyRing) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.keyRing = keyRing;
     }
 
     /**
-     * Returns a JWTVerifier object that can be used to verify the given JWT token.
-     *
-     * @return a JWTVerifier object that can be used to verify the given JWT token
+     * Builds the legacy HMAC512 verifier once, so that it is shared by every request, if legacy tokens are enabled.
      */
-    private JWTVerifier getJWTVerifier() {
-        JWTVerifier verifier;
-        try{
-            Algorithm algorithm = Algorithm.HMAC512(secret);
-            verifier = JWT
-                    .require(algorithm)
+    @PostConstruct
+    public void init() {
+        if (legacyTokensEnabled && StringUtils.isNotBlank(secret)) {
+            legacyVerifier = JWT
+                    .require(Algorithm.HMAC512(secret))
                     .withIssuer(GET_ARRAY_LLC)
                     .build();
-        }catch(JWTVerificationException exception){
-            throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
+            legacyTokensAcceptedUntil = System.currentTimeMillis() + LEGACY_EXPIRATION_TIME;
         }
-        return verifier;
     }
 
+    //= Private Methods ==
+
     /**
-     * Returns an array of claims extracted from the given user principal.
+     * Returns the verifier for the key the given token was signed with, as named by its {@code kid} header.
      *
-     * @param user the user principal
-     * @return an array of claims extracted from the given user principal
+     * @param decodedJWT the decoded, not yet verified, JWT token
+     * @return the verifier for the key the token was signed with
+     * @throws JWTVerificationException if the key is unknown or no longer accepted
      */
-    private String[] getClaimsFromUser(UserPrincipal user) {
-        List<String> authorities = new ArrayList<>();
-        for (GrantedAuthority grantedAuthority : user.getAuthorities()) {
-            authorities.add(grantedAuthority.getAuthority());
+    private JWTVerifier getJWTVerifier(DecodedJWT decodedJWT) {
+        String keyId = decodedJWT.getKeyId();
+        JWTVerifier verifier = keyId != null ? keyRing.getVerifier(keyId)
+                : System.currentTimeMillis() < legacyTokensAcceptedUntil ? legacyVerifier : null;
+        if (verifier == null) {
+            throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
         }
-        return authorities.toArray(new String[0]);
+        return verifier;
     }
 
     /**
-     * Returns true if the given JWT token has expired, false otherwise.
+     * Returns the shared authority set of the given decoded JWT token, read from the compact bitmask claim if the
+     * token has one, or else from the authorities claim.
      *
-     * @param verifier the JWTVerifier object used to verify the JWT token
-     * @param token the JWT token
-     * @return true if the given JWT token has expired, false otherwise
+     * @param decodedJWT the verified and decoded JWT token
+     * @return the shared authority set of the token
      */
-    private boolean isTokenExpired(JWTVerifier verifier, String token) {
-        Date expiration = verifier.verify(token).getExpiresAt();
-        return expiration.before(new Date());
+    private AuthoritySet getAuthorities(DecodedJWT decodedJWT) {
+        Claim authorityMask = decodedJWT.getClaim(AUTHORITY_MASK);
+        if (!authorityMask.isMissing()) {
+            try {
+                return AuthorityRegistry.forMask(authorityMask.asInt());
+            } catch (IllegalArgumentException exception) {
+                throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
+            }
+        }
+        String[] claims = decodedJWT.getClaim(AUTHORITIES).asArray(String.class);
+        return AuthorityRegistry.intern(claims);
     }
 
     //= Public Methods ==
 
     /**
-     * Generates a JWT token for the given user principal.
+     * Generates a JWT token for the given user principal. If {@code jwt.token.compact-authorities} is set, the
+     * authorities are written as a bitmask in the compact claim instead of as an array of names.
      *
      * @param userPrincipal the user principal
      * @return a JWT token for the given user principal
      */
     public String generateJwtToken(UserPrincipal userPrincipal){
-        String[] claim = getClaimsFromUser(userPrincipal);
-        return JWT
-                .create()
+        AuthoritySet authorities = userPrincipal.getAuthorities();
+        JwtKeyRing.SigningKey signingKey = keyRing.getSigningKey();
+        JWTCreator.Builder builder = JWT.create();
+        if (compactAuthorities && authorities == AuthorityRegistry.forMask(authorities.getMask())) {
+            builder.withClaim(AUTHORITY_MASK, authorities.getMask());
+        } else {
+            builder.withArrayClaim(AUTHORITIES, authorities.getNames());
+        }
+        return builder
+                .withKeyId(signingKey.getKeyId())
+                .withJWTId(UUID.randomUUID().toString())
                 .withIssuer(GET_ARRAY_LLC)
                 .withAudience(GET_ARRAY_ADMINISTRATION)
                 .withIssuedAt(new Date())
                 .withSubject(userPrincipal.getUsername())
-                .withArrayClaim(AUTHORITIES, claim)
+                .withClaim(USER_ID, userPrincipal.getId())
+                .withClaim(TOKEN_EPOCH, userPrincipal.getTokenEpoch())
                 .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIM))
-                .sign(Algorithm.HMAC512(secret.getBytes()));
+                .sign(signingKey.getAlgorithm());
     }
 
     /**
-     * Returns a list of GrantedAuthority objects extracted from the given JWT token.
+     * Verifies the given JWT token exactly once, with the key named by its {@code kid} header, and returns the
+     * subject, user id, expiry and authorities it carries. A token that was already verified and has not expired is served from the {@link VerifiedTokenCache}.
+     * A legacy token, which has no {@code kid} header, expires at the latest when legacy tokens stop being accepted,
+     * so that the cache does not serve it past that time.
      *
      * @param token the JWT token
-     * @return a list of GrantedAuthority objects extracted from the given JWT token
+     * @return the verified token
+     * @throws JWTVerificationException if the token cannot be verified or has expired
      */
-    public List<GrantedAuthority> getAuthorities(String token) {
-        String[] claims = getClaimsFromToken(token);
-        return stream(claims)
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    public VerifiedToken verifyToken(String token) {
+        VerifiedToken verifiedToken = verifiedTokenCache.get(token);
+        if (verifiedToken == null) {
+            DecodedJWT decodedJWT = JWT.decode(token);
+            decodedJWT = getJWTVerifier(decodedJWT).verify(decodedJWT);
+            Integer tokenEpoch = decodedJWT.getClaim(TOKEN_EPOCH).asInt();
+            boolean legacy = decodedJWT.getKeyId() == null;
+            Date expiresAt = legacy && decodedJWT.getExpiresAt().getTime() > legacyTokensAcceptedUntil
+                    ? new Date(legacyTokensAcceptedUntil) : decodedJWT.getExpiresAt();
+            verifiedToken = new VerifiedToken(decodedJWT.getId(), decodedJWT.getSubject(),
+                    decodedJWT.getClaim(USER_ID).asLong(), expiresAt,
+                    tokenEpoch == null ? 0 : tokenEpoch, getAuthorities(decodedJWT), legacy);
+            verifiedTokenCache.put(token, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    /**
+     * Returns the shared set of GrantedAuthority objects extracted from the given JWT token.
+     *
+     * @param token the JWT token
+     * @return the shared set of GrantedAuthority objects extracted from the given JWT token
+     */
+    public AuthoritySet getAuthorities(String token) {
+        return verifyToken(token).getAuthorities();
     }
 
     /**
      * Returns an {@link Authentication} object based on the given user name and granted authorities.
      *
      * @param userName the username
-     * @param authorities the granted authorities
+     * @param authorities the shared set of granted authorities
      * @param request the HTTP servlet request
      * @return an {@link Authentication} object based on the given user name and granted authorities
      */
     public Authentication getAuthentication (String userName,
-                                             List<GrantedAuthority> authorities,
+                                             AuthoritySet authorities,
                                              HttpServletRequest request) {
-        UsernamePasswordAuthenticationToken userPasswordAuthToken =
-                new UsernamePasswordAuthenticationToken(
-                        userName,
-                        null,
-                        authorities);
-        userPasswordAuthToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-        return userPasswordAuthToken;
+        JwtAuthentication jwtAuthentication = new JwtAuthentication(userName, authorities);
+        jwtAuthentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        return jwtAuthentication;
     }
 
     /**
@@ -158,8 +221,18 @@ public class JWTTokenProvider {
      * @return a boolean indicating whether the given JWT token is valid for the given user name
      */
     public Boolean isTokenValid(String userName, String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return StringUtils.isNotBlank(userName) && !isTokenExpired(verifier, token);
+        return isTokenValid(userName, verifyToken(token));
+    }
+
+    /**
+     * Returns a boolean indicating whether the given verified token is valid for the given user name.
+     *
+     * @param userName the username
+     * @param verifiedToken the verified token
+     * @return a boolean indicating whether the given verified token is valid for the given user name
+     */
+    public boolean isTokenValid(String userName, VerifiedToken verifiedToken) {
+        return StringUtils.isNotBlank(userName) && !verifiedToken.isExpired(System.currentTimeMillis());
     }
 
     /**
@@ -169,8 +242,7 @@ public class JWTTokenProvider {
      * @return the subject extracted from the given JWT token
      */
     public String getSubject(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getSubject();
+        return verifyToken(token).getSubject();
     }
 
 }
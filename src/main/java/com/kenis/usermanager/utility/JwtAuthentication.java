@@ -0,0 +1,49 @@
+package com.kenis.usermanager.utility;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * The {@link org.springframework.security.core.Authentication} built from a verified JWT token.
+ * <p>
+ * Unlike {@link org.springframework.security.authentication.UsernamePasswordAuthenticationToken}, which copies the
+ * authorities it is given into a new list, this authentication keeps the shared {@link AuthoritySet} of the token, so
+ * that no list is allocated per request and authorization checks can use its bitmask.
+ *
+ * @author Mohamed Ali Kenis
+ * @version 1.0
+ */
+public class JwtAuthentication extends AbstractAuthenticationToken {
+    private final String username;
+    private final AuthoritySet authorities;
+
+    /**
+     * Constructs a new, authenticated {@code JwtAuthentication}.
+     *
+     * @param username    the subject of the token
+     * @param authorities the authorities granted by the token
+     */
+    public JwtAuthentication(String username, AuthoritySet authorities) {
+        super(null);
+        this.username = username;
+        this.authorities = authorities;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return username;
+    }
+}
@@ -0,0 +1,446 @@
+package com.kenis.usermanager.utility;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.kenis.usermanager.constant.SecurityConstant.*;
+
+/**
+ * <h3> Ring of asymmetric keys used to sign and verify JWT tokens.
+ *
+ * <p> Tokens are signed with the private half of the current key (RS256 or ES256) and carry the id of that key in
+ * their {@code kid} header. A verifier is built once per key and looked up by {@code kid}, so verifying a token never
+ * rebuilds an {@link Algorithm}.
+ *
+ * <p> The keys are read from the directory named by {@code jwt.keys.directory}, which every node shares (a mounted
+ * secret, for instance), so that a token signed by one node is accepted by all of them. Each {@code <kid>.pem} file
+ * holds a {@code PUBLIC KEY} block and, for keys that may sign, a PKCS#8 {@code PRIVATE KEY} block, RSA or EC P-256.
+ * Tokens are signed with the key named by {@code jwt.keys.signing-key-id}, or else with the private key whose id sorts
+ * last. The directory is read again on a schedule ({@code jwt.keys.reload-interval}) or on demand, so keys are rotated
+ * by adding a file, without a restart. A key whose file is removed is still accepted for verification until
+ * {@code jwt.keys.grace-period} has elapsed, after which it is dropped.
+ *
+ * <p> Without a key directory, keys are generated in memory for {@code jwt.signing.algorithm} and rotated on a schedule
+ * ({@code jwt.keys.rotation-interval}). Such keys are only known to this node, so this is only fit for a single
+ * instance or for development.
+ *
+ * <p> Only the public halves are ever published (see {@link #getJsonWebKeys()}), so other services can verify our
+ * tokens locally without holding any secret.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+    private static final String RS256 = "RS256";
+    private static final String ES256 = "ES256";
+    private static final int RSA_KEY_SIZE = 2048;
+    private static final String EC_CURVE = "secp256r1";
+    private static final int EC_COORDINATE_LENGTH = 32;
+    private static final String KEY_FILE_SUFFIX = ".pem";
+    private static final Pattern PEM_BLOCK = Pattern.compile("-----BEGIN ([A-Z ]+)-----([^-]+)-----END \\1-----");
+
+    /**
+     * The algorithm used to sign the tokens, either {@code RS256} or {@code ES256}.
+     */
+    @Value("${jwt.signing.algorithm:RS256}")
+    private String signingAlgorithm;
+
+    /**
+     * The directory the shared keys are read from, or blank to generate keys in memory.
+     */
+    @Value("${jwt.keys.directory:}")
+    private String keyDirectory;
+
+    /**
+     * The id of the shared key used to sign new tokens, or blank to use the private key whose id sorts last.
+     */
+    @Value("${jwt.keys.signing-key-id:}")
+    private String signingKeyId;
+
+    /**
+     * How long, in milliseconds, a retired key is still accepted for verification.
+     */
+    @Value("${jwt.keys.grace-period:" + EXPIRATION_TIM + "}")
+    private long gracePeriod;
+
+    /**
+     * The keys that are currently accepted for verification, by key id.
+     */
+    private final Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+
+    /**
+     * The key used to sign new tokens.
+     */
+    private volatile SigningKey currentKey;
+
+    /**
+     * A key pair of the ring together with the algorithm and the verifier built from it.
+     */
+    @Getter
+    public static class SigningKey {
+        private final String keyId;
+        private final Algorithm algorithm;
+        private final JWTVerifier verifier;
+        private final KeyPair keyPair;
+        private volatile long retiredAt;
+
+        SigningKey(String keyId, Algorithm algorithm, KeyPair keyPair) {
+            this.keyId = keyId;
+            this.algorithm = algorithm;
+            this.keyPair = keyPair;
+            this.verifier = JWT
+                    .require(algorithm)
+                    .withIssuer(GET_ARRAY_LLC)
+                    .build();
+        }
+
+        /**
+         * Returns true if this key has a private half and can sign tokens, false otherwise.
+         *
+         * @return true if this key can sign tokens
+         */
+        public boolean canSign() {
+            return keyPair.getPrivate() != null;
+        }
+    }
+
+    /**
+     * Loads the shared keys, or generates the first signing key if no key directory is configured, when the bean
+     * starts.
+     *
+     * @throws IOException if the key directory cannot be read
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (StringUtils.isBlank(keyDirectory)) {
+            log.warn(SIGNING_KEYS_NOT_SHARED);
+            generateAndRotate();
+        } else {
+            loadKeys();
+        }
+    }
+
+    /**
+     * Switches to a new signing key: the shared keys are read again from the key directory, or a new key is generated
+     * if no key directory is configured. Tokens signed with a retired key are still accepted until the grace period
+     * has elapsed.
+     *
+     * @return the id of the signing key
+     * @throws IOException if the key directory cannot be read
+     */
+    public synchronized String rotate() throws IOException {
+        if (StringUtils.isBlank(keyDirectory)) {
+            return generateAndRotate();
+        }
+        loadKeys();
+        return currentKey.getKeyId();
+    }
+
+    /**
+     * Generates a new signing key in memory and retires the current one.
+     *
+     * @return the id of the new signing key
+     */
+    private synchronized String generateAndRotate() {
+        SigningKey newKey = generateKey();
+        keys.put(newKey.getKeyId(), newKey);
+        SigningKey previousKey = currentKey;
+        currentKey = newKey;
+        if (previousKey != null) {
+            previousKey.retiredAt = System.currentTimeMillis();
+        }
+        log.info(SIGNING_KEY_ROTATED + newKey.getKeyId());
+        return newKey.getKeyId();
+    }
+
+    /**
+     * Rotates the signing key generated in memory on the configured schedule. Shared keys are rotated by adding a key
+     * file instead.
+     */
+    @Scheduled(initialDelayString = "${jwt.keys.rotation-interval:" + EXPIRATION_TIM + "}",
+            fixedDelayString = "${jwt.keys.rotation-interval:" + EXPIRATION_TIM + "}")
+    public void scheduledRotate() {
+        if (StringUtils.isBlank(keyDirectory)) {
+            generateAndRotate();
+        }
+    }
+
+    /**
+     * Reads the shared keys again on the configured schedule, so that keys added to or removed from the key directory
+     * are picked up. If the directory cannot be read, the keys already loaded are kept.
+     */
+    @Scheduled(initialDelayString = "${jwt.keys.reload-interval:60000}",
+            fixedDelayString = "${jwt.keys.reload-interval:60000}")
+    public void reloadKeys() {
+        if (StringUtils.isNotBlank(keyDirectory)) {
+            try {
+                loadKeys();
+            } catch (IOException | IllegalStateException e) {
+                log.error(SIGNING_KEYS_NOT_RELOADED + keyDirectory, e);
+            }
+        }
+    }
+
+    /**
+     * Drops the retired keys whose grace period has elapsed.
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.prune-interval:60000}")
+    public void pruneRetiredKeys() {
+        long cutoff = System.currentTimeMillis() - gracePeriod;
+        keys.values().removeIf(key -> key.retiredAt != 0 && key.retiredAt < cutoff);
+    }
+
+    /**
+     * Returns the key used to sign new tokens.
+     *
+     * @return the current signing key
+     */
+    public SigningKey getSigningKey() {
+        return currentKey;
+    }
+
+    /**
+     * Returns the verifier for the key with the given id, or null if the key is unknown or its grace period is over.
+     *
+     * @param keyId the key id read from the {@code kid} header of a token
+     * @return the verifier for the key, or null
+     */
+    public JWTVerifier getVerifier(String keyId) {
+        SigningKey key = keys.get(keyId);
+        return key == null ? null : key.getVerifier();
+    }
+
+    /**
+     * Returns the public halves of every accepted key as a JSON Web Key Set.
+     *
+     * @return a JSON Web Key Set holding the public keys of the ring
+     */
+    public Map<String, Object> getJsonWebKeys() {
+        List<Map<String, Object>> jsonWebKeys = new ArrayList<>();
+        for (SigningKey key : keys.values()) {
+            jsonWebKeys.add(toJsonWebKey(key));
+        }
+        return Map.of("keys", jsonWebKeys);
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Reads every key file of the key directory, switches to the configured signing key and retires the keys whose
+     * file is gone. A key whose material has not changed keeps its verifier.
+     *
+     * @throws IOException           if the key directory or a key file cannot be read
+     * @throws IllegalStateException if a key file is invalid or no key can sign
+     */
+    private synchronized void loadKeys() throws IOException {
+        Map<String, SigningKey> loadedKeys = new TreeMap<>();
+        try (DirectoryStream<Path> keyFiles = Files.newDirectoryStream(Paths.get(keyDirectory), "*" + KEY_FILE_SUFFIX)) {
+            for (Path keyFile : keyFiles) {
+                String fileName = keyFile.getFileName().toString();
+                String keyId = fileName.substring(0, fileName.length() - KEY_FILE_SUFFIX.length());
+                loadedKeys.put(keyId, readKey(keyId, Files.readString(keyFile)));
+            }
+        }
+        SigningKey signingKey = StringUtils.isNotBlank(signingKeyId) ? loadedKeys.get(signingKeyId)
+                : loadedKeys.values().stream().filter(SigningKey::canSign).reduce((first, second) -> second).orElse(null);
+        if (signingKey == null || !signingKey.canSign()) {
+            throw new IllegalStateException(NO_SIGNING_KEY + keyDirectory);
+        }
+        for (SigningKey loadedKey : loadedKeys.values()) {
+            keys.compute(loadedKey.getKeyId(), (keyId, key) -> key != null && key.retiredAt == 0
+                    && Arrays.equals(key.keyPair.getPublic().getEncoded(), loadedKey.keyPair.getPublic().getEncoded())
+                    && key.canSign() == loadedKey.canSign() ? key : loadedKey);
+        }
+        long now = System.currentTimeMillis();
+        for (SigningKey key : keys.values()) {
+            if (!loadedKeys.containsKey(key.getKeyId()) && key.retiredAt == 0) {
+                key.retiredAt = now;
+            }
+        }
+        SigningKey newKey = keys.get(signingKey.getKeyId());
+        if (currentKey == null || !currentKey.getKeyId().equals(newKey.getKeyId())) {
+            log.info(SIGNING_KEY_ROTATED + newKey.getKeyId());
+        }
+        currentKey = newKey;
+    }
+
+    /**
+     * Reads the key with the given id from the PEM blocks of its key file.
+     *
+     * @param keyId the id of the key
+     * @param pem   the content of the key file
+     * @return the key
+     * @throws IllegalStateException if the file holds no valid public key or an invalid private key
+     */
+    private static SigningKey readKey(String keyId, String pem) {
+        PublicKey publicKey = null;
+        PrivateKey privateKey = null;
+        try {
+            Matcher block = PEM_BLOCK.matcher(pem);
+            while (block.find()) {
+                byte[] encoded = Base64.getMimeDecoder().decode(block.group(2).trim());
+                if ("PUBLIC KEY".equals(block.group(1))) {
+                    publicKey = decodePublicKey(encoded);
+                } else if ("PRIVATE KEY".equals(block.group(1))) {
+                    privateKey = decodePrivateKey(encoded);
+                }
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException(INVALID_SIGNING_KEY + keyId, e);
+        }
+        if (publicKey == null) {
+            throw new IllegalStateException(INVALID_SIGNING_KEY + keyId);
+        }
+        KeyPair keyPair = new KeyPair(publicKey, privateKey);
+        Algorithm algorithm = publicKey instanceof RSAPublicKey
+                ? Algorithm.RSA256((RSAPublicKey) publicKey, (RSAPrivateKey) privateKey)
+                : Algorithm.ECDSA256((ECPublicKey) publicKey, (ECPrivateKey) privateKey);
+        return new SigningKey(keyId, algorithm, keyPair);
+    }
+
+    /**
+     * Decodes the given X.509 encoded RSA or EC public key.
+     *
+     * @param encoded the encoded public key
+     * @return the public key
+     * @throws GeneralSecurityException if the key is neither an RSA nor an EC public key
+     */
+    private static PublicKey decodePublicKey(byte[] encoded) throws GeneralSecurityException {
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (InvalidKeySpecException e) {
+            return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(encoded));
+        }
+    }
+
+    /**
+     * Decodes the given PKCS#8 encoded RSA or EC private key.
+     *
+     * @param encoded the encoded private key
+     * @return the private key
+     * @throws GeneralSecurityException if the key is neither an RSA nor an EC private key
+     */
+    private static PrivateKey decodePrivateKey(byte[] encoded) throws GeneralSecurityException {
+        try {
+            return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        } catch (InvalidKeySpecException e) {
+            return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        }
+    }
+
+    /**
+     * Generates a new key pair for the configured signing algorithm.
+     *
+     * @return the new signing key
+     */
+    private SigningKey generateKey() {
+        String keyId = UUID.randomUUID().toString();
+        try {
+            if (ES256.equalsIgnoreCase(signingAlgorithm)) {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec(EC_CURVE));
+                KeyPair keyPair = generator.generateKeyPair();
+                return new SigningKey(keyId, Algorithm.ECDSA256((ECPublicKey) keyPair.getPublic(),
+                        (ECPrivateKey) keyPair.getPrivate()), keyPair);
+            }
+            if (RS256.equalsIgnoreCase(signingAlgorithm)) {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(RSA_KEY_SIZE);
+                KeyPair keyPair = generator.generateKeyPair();
+                return new SigningKey(keyId, Algorithm.RSA256((RSAPublicKey) keyPair.getPublic(),
+                        (RSAPrivateKey) keyPair.getPrivate()), keyPair);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        throw new IllegalStateException(UNSUPPORTED_SIGNING_ALGORITHM + signingAlgorithm);
+    }
+
+    /**
+     * Returns the public half of the given key as a JSON Web Key.
+     *
+     * @param key the signing key
+     * @return the public key as a JSON Web Key
+     */
+    private Map<String, Object> toJsonWebKey(SigningKey key) {
+        Map<String, Object> jsonWebKey = new LinkedHashMap<>();
+        jsonWebKey.put("kid", key.getKeyId());
+        jsonWebKey.put("use", "sig");
+        if (key.getKeyPair().getPublic() instanceof RSAPublicKey) {
+            RSAPublicKey publicKey = (RSAPublicKey) key.getKeyPair().getPublic();
+            jsonWebKey.put("kty", "RSA");
+            jsonWebKey.put("alg", RS256);
+            jsonWebKey.put("n", base64Url(publicKey.getModulus(), 0));
+            jsonWebKey.put("e", base64Url(publicKey.getPublicExponent(), 0));
+        } else {
+            ECPublicKey publicKey = (ECPublicKey) key.getKeyPair().getPublic();
+            jsonWebKey.put("kty", "EC");
+            jsonWebKey.put("alg", ES256);
+            jsonWebKey.put("crv", "P-256");
+            jsonWebKey.put("x", base64Url(publicKey.getW().getAffineX(), EC_COORDINATE_LENGTH));
+            jsonWebKey.put("y", base64Url(publicKey.getW().getAffineY(), EC_COORDINATE_LENGTH));
+        }
+        return jsonWebKey;
+    }
+
+    /**
+     * Returns the unsigned big-endian bytes of the given integer, base64url encoded without padding.
+     *
+     * @param value  the integer to encode
+     * @param length the fixed length to left-pad the bytes to, or 0 to use the minimal length
+     * @return the base64url encoded integer
+     */
+    private static String base64Url(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,80 @@
+package com.kenis.usermanager.utility;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.kenis.usermanager.constant.SecurityConstant.PASSWORD_ENCODER_CALIBRATED;
+
+/**
+ * <h3> Picks the bcrypt cost factor that fits a latency target on the current host.
+ *
+ * <p> Each bcrypt cost step doubles the hashing time, so a fixed cost is either too weak on fast hardware or too slow
+ * on small instances. The calibrator hashes a throw-away password at increasing costs, starting at
+ * {@code password.encoder.min-strength}, and keeps the strongest cost whose median hashing time stays within
+ * {@code password.encoder.target-millis}. It never goes below the minimum nor above
+ * {@code password.encoder.max-strength}.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Slf4j
+@Component
+public class PasswordHashCalibrator {
+    private static final int SAMPLES = 3;
+
+    @Value("${password.encoder.target-millis:250}")
+    private long targetMillis;
+
+    @Value("${password.encoder.min-strength:10}")
+    private int minStrength;
+
+    @Value("${password.encoder.max-strength:14}")
+    private int maxStrength;
+
+    /**
+     * Measures bcrypt on this host and returns the strongest cost that meets the latency target.
+     *
+     * @return the calibrated bcrypt cost factor
+     */
+    public int calibrate() {
+        String password = UUID.randomUUID().toString();
+        int strength = minStrength;
+        for (int candidate = minStrength; candidate <= maxStrength; candidate++) {
+            long millis = medianHashMillis(new BCryptPasswordEncoder(candidate), password);
+            if (candidate > minStrength && millis > targetMillis) {
+                break;
+            }
+            strength = candidate;
+            if (millis * 2 > targetMillis) {
+                break; // the next cost would take about twice as long
+            }
+        }
+        log.info(PASSWORD_ENCODER_CALIBRATED + strength);
+        return strength;
+    }
+
+    //= Private Methods ==
+
+    /**
+     * Returns the median time, in milliseconds, the given encoder takes to hash the given password.
+     *
+     * @param encoder  the encoder to measure
+     * @param password the password to hash
+     * @return the median hashing time in milliseconds
+     */
+    private static long medianHashMillis(BCryptPasswordEncoder encoder, String password) {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(password);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return TimeUnit.NANOSECONDS.toMillis(samples[SAMPLES / 2]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.kenis.usermanager.utility;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <h3> User id generator producing Snowflake ids: a timestamp, a node id and a sequence packed into one long.
+ *
+ * <p> An id holds 41 bits of milliseconds since {@link #EPOCH} (enough for 69 years), the 10 bit node id configured
+ * with {@code user.id.node-id} and a 12 bit sequence number, and is written in decimal after the {@code ID_} prefix.
+ * Ids generated by different nodes differ in their node id, and ids generated by one node differ in their timestamp
+ * or sequence, so no database lookup is needed. The node id must therefore be set, and be distinct, on every
+ * instance; the application does not start without it.
+ *
+ * <p> The timestamp and the sequence of the last id are kept in a single {@link AtomicLong} and advanced with a
+ * compare-and-set, so concurrent registrations never block each other. When more than 4096 ids are generated within
+ * a millisecond, the sequence overflows into the timestamp, which then runs slightly ahead of the clock; if the clock
+ * moves backwards, the ids keep counting from the last timestamp. Either way the ids of a node never repeat while it
+ * runs.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Component
+@ConditionalOnProperty(name = "user.id.generator", havingValue = "snowflake", matchIfMissing = true)
+public class SnowflakeUserIdGenerator implements UserIdGenerator {
+    /**
+     * The start of the timestamps, 2023-01-01T00:00:00Z in milliseconds since the Unix epoch.
+     */
+    static final long EPOCH = 1_672_531_200_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    private final LongSupplier clock;
+
+    /**
+     * The timestamp (relative to {@link #EPOCH}) and the sequence of the last id, as {@code timestamp << 12 | sequence}.
+     */
+    private final AtomicLong lastState = new AtomicLong();
+
+    /**
+     * Constructs a new {@code SnowflakeUserIdGenerator} for the configured node.
+     *
+     * @param nodeId the id of this node, from 0 to 1023
+     */
+    @Autowired
+    public SnowflakeUserIdGenerator(@Value("${user.id.node-id:-1}") long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a new {@code SnowflakeUserIdGenerator} for the given node, reading the time from the given clock.
+     *
+     * @param nodeId the id of this node, from 0 to 1023
+     * @param clock  the clock, in milliseconds since the Unix epoch
+     */
+    SnowflakeUserIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("user.id.node-id must be set to a node id between 0 and " + MAX_NODE_ID
+                    + ", distinct on every instance: " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    @Override
+    public String generateUserId() {
+        return PREFIX + nextId();
+    }
+
+    /**
+     * Returns the next numeric id of this node.
+     *
+     * @return the id
+     */
+    long nextId() {
+        long now = clock.getAsLong() - EPOCH;
+        long previous;
+        long next;
+        do {
+            previous = lastState.get();
+            next = now > previous >>> SEQUENCE_BITS ? now << SEQUENCE_BITS : previous + 1;
+        } while (!lastState.compareAndSet(previous, next));
+        long timestamp = next >>> SEQUENCE_BITS;
+        return timestamp << (NODE_BITS + SEQUENCE_BITS) | nodeId << SEQUENCE_BITS | (next & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,88 @@
+package com.kenis.usermanager.utility;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <h3> Lock-striped, memory-bounded table of token buckets.
+ *
+ * <p> Each key owns a token bucket holding at most {@code capacity} tokens and refilled continuously at
+ * {@code capacity} tokens per period. The keys are spread over a fixed number of stripes, each guarded by its own lock,
+ * so requests for different keys rarely contend. Every stripe is a small LRU map: once the table holds
+ * {@code maximumSize} keys, the least recently used key of a stripe is dropped when a new one is added. A dropped key
+ * simply starts again with a full bucket.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public class TokenBucketTable {
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * The state of one token bucket.
+     */
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+    }
+
+    /**
+     * One stripe of the table: an access-ordered map evicting its least recently used bucket once it is full.
+     */
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        private final int maximumSize;
+
+        private Stripe(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maximumSize;
+        }
+    }
+
+    /**
+     * Constructs a new {@code TokenBucketTable} holding at most about {@code maximumSize} buckets.
+     *
+     * @param maximumSize the maximum number of buckets
+     */
+    public TokenBucketTable(int maximumSize) {
+        int stripeSize = Math.max(1, maximumSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * Takes one token from the bucket of the given key.
+     *
+     * @param key          the key of the bucket
+     * @param capacity     the maximum number of tokens of the bucket
+     * @param periodMillis the time it takes to refill an empty bucket, in milliseconds
+     * @param now          the current time, in milliseconds
+     * @return 0 if a token was taken, otherwise the number of milliseconds until the next token is available
+     */
+    public long tryConsume(String key, int capacity, long periodMillis, long now) {
+        Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket();
+                bucket.tokens = capacity;
+                bucket.refilledAt = now;
+                stripe.put(key, bucket);
+            }
+            double tokensPerMilli = (double) capacity / periodMillis;
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * tokensPerMilli);
+            bucket.refilledAt = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / tokensPerMilli);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.kenis.usermanager.utility;
+
+/**
+ * Generates the public ids of new users.
+ * <p>
+ * Implementations must return ids that are unique across every node of the application without querying the
+ * database, and keep the {@code ID_} prefix of the existing ids.
+ *
+ * @author Mohamed Ali Kenis
+ */
+public interface UserIdGenerator {
+
+    /**
+     * The prefix of every user id.
+     */
+    String PREFIX = "ID_";
+
+    /**
+     * Returns a new, unique user id.
+     *
+     * @return the user id
+     */
+    String generateUserId();
+}
@@ -0,0 +1,114 @@
+package com.kenis.usermanager.utility;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.kenis.usermanager.domain.VerifiedToken;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.kenis.usermanager.constant.SecurityConstant.EXPIRATION_TIM;
+
+/**
+ * <h3> Bounded in-memory cache of tokens that have already been verified.
+ *
+ * <p> Clients send the same bearer token on every request of a session. Once a token has been verified, its
+ * {@link VerifiedToken} is kept here so that the following requests skip the signature check, the JSON decoding of
+ * the claims and the construction of the authority list.
+ *
+ * <p> Entries are keyed on a SHA-256 digest of the raw token, so the tokens themselves are never held in memory. The
+ * cache is bounded by entry count, and an entry is never returned after the expiry of its own token. Hits and misses
+ * are counted and published as metrics. The cache can be turned off with {@code jwt.cache.enabled=false}.
+ *
+ * @author Mohamed Ali Kenis
+ */
+@Component
+public class VerifiedTokenCache {
+    private final boolean enabled;
+
+    /**
+     * Cache of verified tokens. The keys are digests of the raw tokens and the values are the verified tokens.
+     */
+    private final Cache<String, VerifiedToken> cache;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a new {@code VerifiedTokenCache} holding at most {@code maximumSize} tokens. No entry outlives the
+     * lifetime of a token, and each entry is additionally checked against its own expiry when it is read.
+     *
+     * @param enabled       whether the cache is used at all
+     * @param maximumSize   the maximum number of cached tokens
+     * @param meterRegistry the registry the hit/miss counters are published to
+     */
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.cache.maximum-size:10000}") long maximumSize,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = CacheBuilder
+                .newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRATION_TIM, TimeUnit.MILLISECONDS)
+                .build();
+        FunctionCounter.builder("jwt.cache.requests", hits, LongAdder::sum).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("jwt.cache.requests", misses, LongAdder::sum).tag("result", "miss").register(meterRegistry);
+        Gauge.builder("jwt.cache.size", cache, Cache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the verified token cached for the given raw token, or null if there is none or it has expired.
+     *
+     * @param token the raw JWT token
+     * @return the cached verified token, or null
+     */
+    public VerifiedToken get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        String key = Digests.sha256(token);
+        VerifiedToken verifiedToken = cache.getIfPresent(key);
+        if (verifiedToken != null && verifiedToken.isExpired(System.currentTimeMillis())) {
+            cache.invalidate(key);
+            verifiedToken = null;
+        }
+        (verifiedToken == null ? misses : hits).increment();
+        return verifiedToken;
+    }
+
+    /**
+     * Caches the given verified token for the given raw token.
+     *
+     * @param token         the raw JWT token
+     * @param verifiedToken the result of verifying the token
+     */
+    public void put(String token, VerifiedToken verifiedToken) {
+        if (enabled) {
+            cache.put(Digests.sha256(token), verifiedToken);
+        }
+    }
+
+    /**
+     * Returns the number of cache hits since start-up.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of cache misses since start-up.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,40 @@
+-- Schema as previously generated by Hibernate (ddl-auto=update). Existing databases are baselined at version 0, so
+-- this script also runs on them and must only add what an older Hibernate-generated schema may lack.
+
+create table if not exists user_details
+(
+    id                      bigserial    not null,
+    user_id                 varchar(255) not null,
+    first_name              varchar(255) not null,
+    last_name               varchar(255) not null,
+    username                varchar(255) not null,
+    password                varchar(255) not null,
+    email                   varchar(255) not null,
+    profile_image_url       varchar(255) not null,
+    last_login_date         timestamp,
+    last_login_date_display timestamp,
+    join_date               timestamp    not null,
+    role                    varchar(255) not null,
+    authorities             bytea        not null,
+    is_active               boolean      not null,
+    is_not_locked           boolean      not null,
+    token_epoch             integer default 0 not null,
+    constraint user_details_pkey primary key (id),
+    constraint user_details_email_unique unique (email),
+    constraint user_details_user_id_unique unique (user_id)
+);
+
+-- Columns and unique keys added after the schema was first generated by Hibernate.
+alter table user_details add column if not exists token_epoch integer default 0 not null;
+create unique index if not exists user_details_email_unique on user_details (email);
+create unique index if not exists user_details_user_id_unique on user_details (user_id);
+
+create table if not exists refresh_token
+(
+    id         bigserial    not null,
+    token_hash varchar(255) not null,
+    user_id    bigint       not null,
+    expires_at timestamp    not null,
+    constraint refresh_token_pkey primary key (id),
+    constraint refresh_token_token_hash_unique unique (token_hash)
+);
@@ -0,0 +1,11 @@
+-- Failed login attempts per username and time bucket, shared by every node (login.attempts.store=jdbc).
+
+create table if not exists login_attempt
+(
+    username varchar(255) not null,
+    bucket   bigint       not null,
+    attempts integer      not null,
+    constraint login_attempt_pkey primary key (username, bucket)
+);
+
+create index if not exists login_attempt_bucket_idx on login_attempt (bucket);
@@ -0,0 +1,13 @@
+-- Logins look users up by username, which had no index. Fails if two users already share a username.
+create unique index if not exists user_details_username_unique on user_details (username);
+
+-- Case-normalized lookups and prefix searches (lower(column) like 'abc%') on username and email.
+create index if not exists user_details_username_lower_idx on user_details (lower(username) text_pattern_ops);
+create index if not exists user_details_email_lower_idx on user_details (lower(email) text_pattern_ops);
+
+-- Filtering the user list by role, active and locked state, in id order.
+create index if not exists user_details_role_active_locked_idx on user_details (role, is_active, is_not_locked, id);
+
+-- Revoking the refresh tokens of a user and deleting the expired ones.
+create index if not exists refresh_token_user_id_idx on refresh_token (user_id);
+create index if not exists refresh_token_expires_at_idx on refresh_token (expires_at);
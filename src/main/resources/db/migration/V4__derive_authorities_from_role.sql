@@ -0,0 +1,31 @@
+-- Authorities are derived from the role in memory (Role enum), so the serialized authorities column goes.
+-- Normalize the stored roles first, so that every row maps onto a Role constant.
+update user_details
+set role = upper(trim(role))
+where role <> upper(trim(role));
+
+update user_details
+set role = 'ROLE_' || role
+where role not like 'ROLE\_%';
+
+update user_details
+set role = 'ROLE_SUPER_ADMIN'
+where role = 'ROLE_SUPERADMIN';
+
+-- A role still unknown cannot be mapped safely, so the migration stops and lists the rows to fix by hand.
+do
+$$
+    declare
+        unknown_roles text;
+    begin
+        select string_agg(id || ' (' || username || '): ' || role, ', ' order by id)
+        into unknown_roles
+        from user_details
+        where role not in ('ROLE_USER', 'ROLE_HR', 'ROLE_MANAGER', 'ROLE_ADMIN', 'ROLE_SUPER_ADMIN');
+        if unknown_roles is not null then
+            raise exception 'user_details rows with an unknown role: %', unknown_roles;
+        end if;
+    end
+$$;
+
+alter table user_details drop column if exists authorities;
@@ -0,0 +1,12 @@
+-- Token epochs advanced by a lock, disable, role or username change, or a delete, keyed by the immutable user id and
+-- shared by every node. Rows are deleted once every token issued before the change has expired.
+
+create table if not exists token_epoch
+(
+    user_id     bigint    not null,
+    token_epoch integer   not null,
+    updated_at  timestamp not null,
+    constraint token_epoch_pkey primary key (user_id)
+);
+
+create index if not exists token_epoch_updated_at_idx on token_epoch (updated_at);
@@ -0,0 +1,12 @@
+-- Ids of revoked JWTs, shared by every node until the tokens expire.
+
+create table if not exists revoked_token
+(
+    token_id   varchar(255) not null,
+    expires_at timestamp    not null,
+    revoked_at timestamp    not null,
+    constraint revoked_token_pkey primary key (token_id)
+);
+
+create index if not exists revoked_token_revoked_at_idx on revoked_token (revoked_at);
+create index if not exists revoked_token_expires_at_idx on revoked_token (expires_at);
@@ -0,0 +1,119 @@
+package com.kenis.usermanager.configuration;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.repository.UserRepository;
+import com.kenis.usermanager.service.UserCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+    private final DataSource primary = mock(DataSource.class);
+
+    private final DataSource replica = mock(DataSource.class);
+
+    private DataSource dataSource;
+
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(mock(Connection.class));
+        when(replica.getConnection()).thenReturn(mock(Connection.class));
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.Route.PRIMARY, primary,
+                ReadWriteRoutingDataSource.Route.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        dataSource = new LazyConnectionDataSourceProxy(routing);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        // the proxy reads the connection defaults from the primary when it is built
+        clearInvocations(primary, replica);
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplica() throws SQLException {
+        runStatement(readOnly(new TransactionTemplate(transactionManager)));
+
+        verify(replica).getConnection();
+        verify(primary, never()).getConnection();
+    }
+
+    @Test
+    void readWriteTransactionsUseThePrimary() throws SQLException {
+        runStatement(new TransactionTemplate(transactionManager));
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readOnlyCallsJoiningAReadWriteTransactionUseThePrimary() throws SQLException {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = readOnly(new TransactionTemplate(transactionManager));
+        readWrite.executeWithoutResult(outer -> runStatement(readOnly));
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readsOutsideATransactionUseThePrimary() throws SQLException {
+        dataSource.getConnection().createStatement();
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void userCacheMissesInsideAReadOnlyTransactionUseThePrimary() throws SQLException {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findUserByUsername("jane")).thenAnswer(invocation -> {
+            DataSourceUtils.getConnection(dataSource).createStatement();
+            User user = new User();
+            user.setId(7L);
+            user.setUsername("jane");
+            return user;
+        });
+        UserCache userCache = new UserCache(userRepository, transactionManager, 100, 60_000, new SimpleMeterRegistry());
+
+        readOnly(new TransactionTemplate(transactionManager))
+                .executeWithoutResult(status -> userCache.findUserByUsername("jane"));
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    private static TransactionTemplate readOnly(TransactionTemplate template) {
+        template.setReadOnly(true);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        return template;
+    }
+
+    private void runStatement(TransactionTemplate template) {
+        template.executeWithoutResult(status -> {
+            try {
+                DataSourceUtils.getConnection(dataSource).createStatement();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package com.kenis.usermanager.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitingFilterTest {
+    private final RateLimitingFilter filter = new RateLimitingFilter(true, 1000, 100, 2, 5, 3, 5, 2, 120);
+
+    @Test
+    void loginIsThrottledPerUsernameAndTheBodyIsStillReadable() throws Exception {
+        byte[] body = "{\"username\":\"alice\",\"password\":\"secret\"}".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 2; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(login(body), new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+            assertArrayEquals(body, chain.getRequest().getInputStream().readAllBytes());
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(login(body), response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(429, response.getStatus());
+        assertNotNull(response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("TOO MANY REQUESTS. PLEASE TRY AGAIN LATER"));
+    }
+
+    @Test
+    void theCachedBodyCanBeReadWithAReadListener() throws Exception {
+        byte[] body = "{\"username\":\"alice\"}".getBytes(StandardCharsets.UTF_8);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(login(body), new MockHttpServletResponse(), chain);
+        ServletInputStream inputStream = chain.getRequest().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+
+        inputStream.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (inputStream.isReady() && !inputStream.isFinished()) {
+                    read.write(inputStream.read());
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allDataRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+        });
+
+        assertArrayEquals(body, read.toByteArray());
+        assertTrue(allDataRead.get());
+    }
+
+    @Test
+    void otherUsernamesAreNotThrottled() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(login(("{\"username\":\"user" + i + "\"}").getBytes(StandardCharsets.UTF_8)),
+                    new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+        }
+    }
+
+    @Test
+    void aChunkedBodyOverTheLimitIsRejected() throws Exception {
+        byte[] body = new byte[1024 * 1024];
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/user/login") {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+
+            @Override
+            public ServletInputStream getInputStream() {
+                return new DelegatingServletInputStream(new ByteArrayInputStream(body));
+            }
+        };
+        request.setServletPath("/user/login");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(413, response.getStatus());
+    }
+
+    @Test
+    void otherEndpointsAreNotFiltered() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/list");
+            request.setServletPath("/user/list");
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+        }
+    }
+
+    private static MockHttpServletRequest login(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/user/login");
+        request.setServletPath("/user/login");
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+}
@@ -0,0 +1,83 @@
+package com.kenis.usermanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LastLoginRecorderTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final List<List<Object[]>> batches = new ArrayList<>();
+
+    @Test
+    void aFailedBatchIsRetriedWithTheNextFlush() {
+        LastLoginRecorder recorder = new LastLoginRecorder(jdbcTemplate, 100);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenAnswer(invocation -> {
+                    batches.add(invocation.getArgument(1));
+                    return new int[0];
+                });
+        recorder.recordLogin(7L, null, new Date(1_000));
+
+        assertThrows(DataAccessResourceFailureException.class, recorder::flush);
+        recorder.flush();
+        recorder.flush();
+
+        assertEquals(1, batches.size());
+        assertEquals(7L, batches.get(0).get(0)[2]);
+    }
+
+    @Test
+    void aLoginRecordedDuringAFlushIsKeptForTheNextOne() {
+        LastLoginRecorder recorder = new LastLoginRecorder(jdbcTemplate, 100);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            if (batches.isEmpty()) {
+                recorder.recordLogin(7L, new Date(1_000), new Date(2_000));
+            }
+            batches.add(invocation.getArgument(1));
+            return new int[0];
+        });
+        recorder.recordLogin(7L, null, new Date(1_000));
+
+        recorder.flush();
+        recorder.flush();
+
+        assertEquals(2, batches.size());
+        assertEquals(2_000L, ((Date) batches.get(1).get(0)[0]).getTime());
+    }
+
+    @Test
+    void aFullBufferIsFlushedOffTheLoginThread() throws InterruptedException {
+        LastLoginRecorder recorder = new LastLoginRecorder(jdbcTemplate, 1);
+        CountDownLatch flushed = new CountDownLatch(1);
+        List<Thread> flushThreads = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            flushThreads.add(Thread.currentThread());
+            flushed.countDown();
+            return new int[0];
+        });
+        recorder.recordLogin(7L, null, new Date(1_000));
+
+        recorder.recordLogin(8L, null, new Date(1_000));
+
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), flushThreads.get(0));
+        recorder.shutdown();
+    }
+}
@@ -0,0 +1,134 @@
+package com.kenis.usermanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoginAttemptServiceTest {
+    private final LoginAttemptStore loginAttemptStore = mock(LoginAttemptStore.class);
+
+    private final LoginAttemptService loginAttemptService = new LoginAttemptService(loginAttemptStore, 60_000, 100);
+
+    @Test
+    void attemptsBeingWrittenAreStillCounted() {
+        AtomicBoolean exceededDuringWrite = new AtomicBoolean();
+        doAnswer(invocation -> {
+            exceededDuringWrite.set(loginAttemptService.hasExceededMaxAttempts("jane"));
+            when(loginAttemptStore.getAttempts("jane")).thenReturn(5);
+            return null;
+        }).when(loginAttemptStore).recordAttempts(anyMap());
+        failFiveTimes("jane");
+
+        loginAttemptService.flushPendingAttempts();
+
+        assertTrue(exceededDuringWrite.get());
+        assertTrue(loginAttemptService.hasExceededMaxAttempts("jane"));
+    }
+
+    @Test
+    void attemptsOfAFailedWriteAreKeptForTheNextBatch() {
+        failFiveTimes("jane");
+        doThrow(new IllegalStateException("database down")).when(loginAttemptStore).recordAttempts(anyMap());
+
+        assertThrows(IllegalStateException.class, loginAttemptService::flushPendingAttempts);
+
+        assertTrue(loginAttemptService.hasExceededMaxAttempts("jane"));
+        doAnswer(invocation -> null).when(loginAttemptStore).recordAttempts(anyMap());
+        loginAttemptService.flushPendingAttempts();
+        verify(loginAttemptStore, times(2)).recordAttempts(Map.of("jane", 5));
+    }
+
+    @Test
+    void attemptsAddedDuringTheWriteStayBuffered() {
+        doAnswer(invocation -> {
+            loginAttemptService.addUserToLoginAttemptCache("jane");
+            return null;
+        }).when(loginAttemptStore).recordAttempts(anyMap());
+        loginAttemptService.addUserToLoginAttemptCache("jane");
+
+        loginAttemptService.flushPendingAttempts();
+
+        doAnswer(invocation -> null).when(loginAttemptStore).recordAttempts(anyMap());
+        loginAttemptService.flushPendingAttempts();
+        verify(loginAttemptStore, times(2)).recordAttempts(Map.of("jane", 1));
+    }
+
+    @Test
+    void aLoginWithoutFailedAttemptsDoesNotResetTheStore() {
+        assertFalse(loginAttemptService.hasExceededMaxAttempts("jane"));
+
+        loginAttemptService.evictUserFromLoginAttemptCache("jane");
+
+        verify(loginAttemptStore, never()).reset("jane");
+    }
+
+    @Test
+    void aLoginAfterFailedAttemptsResetsTheStore() {
+        when(loginAttemptStore.getAttempts("jane")).thenReturn(2);
+
+        loginAttemptService.evictUserFromLoginAttemptCache("jane");
+
+        verify(loginAttemptStore).reset("jane");
+    }
+
+    @Test
+    void aResetWaitsForTheBatchBeingWrittenSoItCannotBeUndone() throws Exception {
+        AtomicBoolean resetBlocked = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Thread reset = new Thread(() -> loginAttemptService.evictUserFromLoginAttemptCache("jane"));
+            reset.start();
+            reset.join(200);
+            resetBlocked.set(reset.isAlive());
+            when(loginAttemptStore.getAttempts("jane")).thenReturn(5);
+            return null;
+        }).when(loginAttemptStore).recordAttempts(anyMap());
+        failFiveTimes("jane");
+
+        loginAttemptService.flushPendingAttempts();
+
+        assertTrue(resetBlocked.get());
+        InOrder inOrder = inOrder(loginAttemptStore);
+        inOrder.verify(loginAttemptStore, timeout(1_000)).recordAttempts(Map.of("jane", 5));
+        inOrder.verify(loginAttemptStore, timeout(1_000)).reset("jane");
+    }
+
+    @Test
+    void aLocalStoreIsUsedDirectly() {
+        LoginAttemptStore localStore = mock(LoginAttemptStore.class);
+        when(localStore.isLocal()).thenReturn(true);
+        when(localStore.getAttempts("jane")).thenReturn(4, 5);
+        LoginAttemptService localService = new LoginAttemptService(localStore, 60_000, 100);
+
+        localService.addUserToLoginAttemptCache("jane");
+        assertFalse(localService.hasExceededMaxAttempts("jane"));
+        assertTrue(localService.hasExceededMaxAttempts("jane"));
+        localService.evictUserFromLoginAttemptCache("jane");
+        localService.flushPendingAttempts();
+
+        verify(localStore).recordAttempt("jane");
+        verify(localStore).reset("jane");
+        verify(localStore, never()).recordAttempts(anyMap());
+    }
+
+    private void failFiveTimes(String username) {
+        for (int i = 0; i < 5; i++) {
+            loginAttemptService.addUserToLoginAttemptCache(username);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.kenis.usermanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginAttemptTrackerTest {
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    @Test
+    void concurrentAttemptsAreNeverLost() throws Exception {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1 << 20, 15 * MINUTE, 15, now::get);
+        int threads = 16;
+        int usernames = 64;
+        int attemptsPerThread = usernames * 320;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    tracker.recordAttempt("user" + ((i + offset) % usernames));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (int u = 0; u < usernames; u++) {
+            int attempts = tracker.getAttempts("user" + u);
+            assertEquals(threads * attemptsPerThread / usernames, attempts);
+            total += attempts;
+        }
+        assertEquals((long) threads * attemptsPerThread, total);
+    }
+
+    @Test
+    void attemptsLeaveTheWindowBucketByBucket() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1 << 16, 15 * MINUTE, 15, now::get);
+        tracker.recordAttempt("alice");
+        tracker.recordAttempt("alice");
+        now.addAndGet(10 * MINUTE);
+        tracker.recordAttempt("alice");
+        assertEquals(3, tracker.getAttempts("alice"));
+
+        now.addAndGet(5 * MINUTE);
+        assertEquals(1, tracker.getAttempts("alice"));
+
+        now.addAndGet(10 * MINUTE);
+        assertEquals(0, tracker.getAttempts("alice"));
+    }
+
+    @Test
+    void resetForgetsOnlyTheGivenUsername() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1 << 16, 15 * MINUTE, 15, now::get);
+        tracker.recordAttempt("alice");
+        tracker.recordAttempt("bob");
+        tracker.reset("alice");
+        assertEquals(0, tracker.getAttempts("alice"));
+        assertEquals(1, tracker.getAttempts("bob"));
+        assertEquals(0, tracker.getAttempts("carol"));
+    }
+
+    @Test
+    void aSaturatedTableNeverChargesAUsernameWithTheAttemptsOfAnother() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 15 * MINUTE, 15, now::get);
+        int usernames = tracker.getCapacity() * 8;
+        for (int u = 0; u < usernames; u++) {
+            for (int i = 0; i < 5; i++) {
+                tracker.recordAttempt("user" + u);
+            }
+        }
+
+        assertEquals(0, tracker.getAttempts("innocent"));
+        tracker.recordAttempt("innocent");
+        assertEquals(1, tracker.getAttempts("innocent"));
+        for (int u = 0; u < usernames; u++) {
+            assertTrue(tracker.getAttempts("user" + u) <= 5);
+        }
+    }
+
+    @Test
+    void aFloodOfSingleAttemptsEvictsThemBeforeAHeavilyAttackedUsername() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 15 * MINUTE, 15, now::get);
+        for (int i = 0; i < 5; i++) {
+            tracker.recordAttempt("target");
+        }
+
+        for (int u = 0; u < tracker.getCapacity() * 64; u++) {
+            tracker.recordAttempt("random" + u);
+        }
+
+        assertEquals(5, tracker.getAttempts("target"));
+    }
+
+    @Test
+    void staleSlotsAreReused() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 15 * MINUTE, 15, now::get);
+        for (int u = 0; u < tracker.getCapacity() * 4; u++) {
+            tracker.recordAttempt("old" + u);
+        }
+        now.addAndGet(16 * MINUTE);
+        for (int u = 0; u < tracker.getCapacity(); u++) {
+            tracker.recordAttempt("new" + u);
+        }
+        for (int u = 0; u < tracker.getCapacity(); u++) {
+            assertEquals(1, tracker.getAttempts("new" + u));
+        }
+    }
+}
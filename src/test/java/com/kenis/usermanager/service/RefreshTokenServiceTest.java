@@ -0,0 +1,127 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.RefreshToken;
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.exception.domain.InvalidRefreshTokenException;
+import com.kenis.usermanager.repository.RefreshTokenRepository;
+import com.kenis.usermanager.repository.UserRepository;
+import com.kenis.usermanager.utility.Digests;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RefreshTokenServiceTest {
+    private final RefreshTokenRepository refreshTokenRepository = mock(RefreshTokenRepository.class);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private final RefreshTokenService refreshTokenService =
+            new RefreshTokenService(refreshTokenRepository, userRepository);
+
+    private final Map<String, RefreshToken> tokensByHash = new HashMap<>();
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void storeTokensInMemory() {
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> {
+            RefreshToken refreshToken = invocation.getArgument(0);
+            refreshToken.setId(ids.incrementAndGet());
+            tokensByHash.put(refreshToken.getTokenHash(), refreshToken);
+            return refreshToken;
+        });
+        when(refreshTokenRepository.findRefreshTokenByTokenHash(anyString()))
+                .thenAnswer(invocation -> tokensByHash.get(invocation.<String>getArgument(0)));
+        when(refreshTokenRepository.deleteRefreshTokenById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return tokensByHash.values().removeIf(refreshToken -> refreshToken.getId().equals(id)) ? 1 : 0;
+        });
+    }
+
+    @Test
+    void onlyTheDigestOfTheTokenIsStored() {
+        String token = refreshTokenService.issueRefreshToken(user(7L, true, true));
+
+        assertEquals(7L, tokensByHash.get(Digests.sha256(token)).getUserId());
+        assertEquals(1, tokensByHash.size());
+    }
+
+    @Test
+    void rotatingATokenReturnsItsUserAndIssuesADifferentToken() throws InvalidRefreshTokenException {
+        User user = user(7L, true, true);
+        when(userRepository.findUserById(7L)).thenReturn(user);
+        String token = refreshTokenService.issueRefreshToken(user);
+
+        User owner = refreshTokenService.consumeRefreshToken(token);
+        String rotated = refreshTokenService.issueRefreshToken(owner);
+
+        assertEquals(user, owner);
+        assertNotEquals(token, rotated);
+        assertEquals(user, refreshTokenService.consumeRefreshToken(rotated));
+    }
+
+    @Test
+    void aConsumedTokenCannotBeReused() throws InvalidRefreshTokenException {
+        when(userRepository.findUserById(7L)).thenReturn(user(7L, true, true));
+        String token = refreshTokenService.issueRefreshToken(user(7L, true, true));
+        RefreshToken refreshToken = tokensByHash.get(Digests.sha256(token));
+
+        refreshTokenService.consumeRefreshToken(token);
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.consumeRefreshToken(token));
+        // a second request that read the token before the first one deleted it loses the delete
+        doReturn(0).when(refreshTokenRepository).deleteRefreshTokenById(refreshToken.getId());
+        tokensByHash.put(refreshToken.getTokenHash(), refreshToken);
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.consumeRefreshToken(token));
+    }
+
+    @Test
+    void anExpiredTokenIsRejectedAndConsumed() {
+        when(userRepository.findUserById(7L)).thenReturn(user(7L, true, true));
+        String token = refreshTokenService.issueRefreshToken(user(7L, true, true));
+        tokensByHash.get(Digests.sha256(token)).setExpiresAt(new Date(System.currentTimeMillis() - 1));
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.consumeRefreshToken(token));
+        assertEquals(0, tokensByHash.size());
+    }
+
+    @Test
+    void tokensOfLockedOrDisabledUsersAreRejected() {
+        when(userRepository.findUserById(7L)).thenReturn(user(7L, true, false));
+        when(userRepository.findUserById(8L)).thenReturn(user(8L, false, true));
+        String lockedToken = refreshTokenService.issueRefreshToken(user(7L, true, true));
+        String disabledToken = refreshTokenService.issueRefreshToken(user(8L, true, true));
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.consumeRefreshToken(lockedToken));
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.consumeRefreshToken(disabledToken));
+    }
+
+    @Test
+    void unknownTokensAreRejected() {
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.consumeRefreshToken("unknown"));
+    }
+
+    private static User user(long id, boolean isActive, boolean isNotLocked) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setRole("ROLE_USER");
+        user.setIsActive(isActive);
+        user.setIsNotLocked(isNotLocked);
+        return user;
+    }
+}
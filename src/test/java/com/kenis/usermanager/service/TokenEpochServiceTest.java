@@ -0,0 +1,122 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserTokenEpoch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.kenis.usermanager.constant.SecurityConstant.EXPIRATION_TIM;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenEpochServiceTest {
+    private static final long OVERLAP = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private final TokenEpochStore tokenEpochStore = mock(TokenEpochStore.class);
+
+    private final TokenEpochService tokenEpochService = new TokenEpochService(tokenEpochStore, OVERLAP, now::get);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void advancingTheEpochRejectsOlderTokensOnly() {
+        User user = user(7L, 2);
+
+        tokenEpochService.advanceTokenEpoch(user);
+
+        assertEquals(3, user.getTokenEpoch());
+        verify(tokenEpochStore).saveTokenEpoch(7L, 3, now.get());
+        assertFalse(tokenEpochService.isCurrent(7L, 2));
+        assertTrue(tokenEpochService.isCurrent(7L, 3));
+        assertTrue(tokenEpochService.isCurrent(8L, 0));
+    }
+
+    @Test
+    void deletingAUserRejectsEveryTokenOfThatIdOnly() {
+        tokenEpochService.revokeAllTokens(7L);
+
+        assertFalse(tokenEpochService.isCurrent(7L, 1_000));
+        assertTrue(tokenEpochService.isCurrent(8L, 0));
+    }
+
+    @Test
+    void tokensWithoutUserIdAreNeverCurrent() {
+        assertFalse(tokenEpochService.isCurrent(null, 0));
+    }
+
+    @Test
+    void epochsAreOnlyAppliedOnceTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        tokenEpochService.advanceTokenEpoch(user(7L, 0));
+
+        assertTrue(tokenEpochService.isCurrent(7L, 0));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertFalse(tokenEpochService.isCurrent(7L, 0));
+    }
+
+    @Test
+    void refreshReadsOnlyTheEpochsAdvancedSinceTheLastRefresh() {
+        long advancedAt = now.get() - 1_000;
+        when(tokenEpochStore.findTokenEpochsUpdatedAfter(anyLong())).thenReturn(List.of());
+        when(tokenEpochStore.findTokenEpochsUpdatedAfter(-OVERLAP))
+                .thenReturn(List.of(new UserTokenEpoch(7L, 4, advancedAt)));
+
+        tokenEpochService.refreshTokenEpochs();
+        tokenEpochService.refreshTokenEpochs();
+
+        verify(tokenEpochStore).findTokenEpochsUpdatedAfter(advancedAt - OVERLAP);
+        assertFalse(tokenEpochService.isCurrent(7L, 3));
+        assertTrue(tokenEpochService.isCurrent(7L, 4));
+    }
+
+    @Test
+    void refreshNeverMovesAnEpochBack() {
+        tokenEpochService.advanceTokenEpoch(user(7L, 4));
+        when(tokenEpochStore.findTokenEpochsUpdatedAfter(anyLong()))
+                .thenReturn(List.of(new UserTokenEpoch(7L, 2, now.get())));
+
+        tokenEpochService.refreshTokenEpochs();
+
+        assertFalse(tokenEpochService.isCurrent(7L, 4));
+    }
+
+    @Test
+    void epochsAreDroppedOnceEveryOlderTokenHasExpired() {
+        tokenEpochService.revokeAllTokens(7L);
+        when(tokenEpochStore.findTokenEpochsUpdatedAfter(anyLong())).thenReturn(List.of());
+
+        now.addAndGet(EXPIRATION_TIM + OVERLAP + 1);
+        tokenEpochService.refreshTokenEpochs();
+        tokenEpochService.pruneTokenEpochs();
+
+        assertTrue(tokenEpochService.isCurrent(7L, 0));
+        verify(tokenEpochStore).deleteTokenEpochsUpdatedBefore(now.get() - EXPIRATION_TIM - OVERLAP);
+    }
+
+    private static User user(long id, int tokenEpoch) {
+        User user = new User();
+        user.setId(id);
+        user.setTokenEpoch(tokenEpoch);
+        return user;
+    }
+}
@@ -0,0 +1,80 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.RevokedToken;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationServiceTest {
+    private static final long OVERLAP = 60_000L;
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private final RevokedTokenStore revokedTokenStore = mock(RevokedTokenStore.class);
+
+    private final TokenRevocationService tokenRevocationService =
+            new TokenRevocationService(revokedTokenStore, 100, OVERLAP, now::get);
+
+    @Test
+    void revokedTokensAreStoredAndRejected() {
+        tokenRevocationService.revoke("jti-1", now.get() + MINUTE);
+
+        ArgumentCaptor<RevokedToken> stored = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenStore).saveRevokedToken(stored.capture());
+        assertEquals("jti-1", stored.getValue().getTokenId());
+        assertEquals(now.get() + MINUTE, stored.getValue().getExpiresAt());
+        assertEquals(now.get(), stored.getValue().getRevokedAt());
+        assertTrue(tokenRevocationService.isRevoked("jti-1"));
+    }
+
+    @Test
+    void tokensThatWereNeverRevokedAreAccepted() {
+        for (int i = 0; i < 100; i++) {
+            tokenRevocationService.revoke("revoked-" + i, now.get() + MINUTE);
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(tokenRevocationService.isRevoked("other-" + i));
+        }
+        assertFalse(tokenRevocationService.isRevoked(null));
+    }
+
+    @Test
+    void revocationsMadeOnOtherNodesArePickedUpIncrementally() {
+        long revokedAt = now.get() - 1_000;
+        when(revokedTokenStore.findRevokedTokensRevokedAfter(anyLong(), anyLong())).thenReturn(List.of());
+        when(revokedTokenStore.findRevokedTokensRevokedAfter(eq(-OVERLAP), anyLong()))
+                .thenReturn(List.of(new RevokedToken("jti-2", now.get() + MINUTE, revokedAt)));
+
+        tokenRevocationService.refreshRevokedTokenIds();
+        tokenRevocationService.refreshRevokedTokenIds();
+
+        verify(revokedTokenStore).findRevokedTokensRevokedAfter(revokedAt - OVERLAP, now.get());
+        assertTrue(tokenRevocationService.isRevoked("jti-2"));
+    }
+
+    @Test
+    void expiredRevocationsArePrunedFromMemoryAndTheStore() {
+        tokenRevocationService.revoke("short", now.get() + MINUTE);
+        tokenRevocationService.revoke("long", now.get() + 10 * MINUTE);
+
+        now.addAndGet(2 * MINUTE);
+        tokenRevocationService.pruneExpiredTokenIds();
+
+        verify(revokedTokenStore).deleteRevokedTokensExpiredBefore(now.get());
+        assertFalse(tokenRevocationService.isRevoked("short"));
+        assertTrue(tokenRevocationService.isRevoked("long"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.kenis.usermanager.service;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserCacheTest {
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private final UserCache userCache = new UserCache(userRepository, mock(PlatformTransactionManager.class), 100, 60_000,
+            new SimpleMeterRegistry());
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void usersAreLoadedOnceAndHandedOutAsCopies() {
+        when(userRepository.findUserByUsername("jane")).thenReturn(user("jane", true));
+
+        User first = userCache.findUserByUsername("jane");
+        User second = userCache.findUserByUsername("jane");
+
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        verify(userRepository, times(1)).findUserByUsername("jane");
+    }
+
+    @Test
+    void aLoadOverlappingAnEvictionIsNotCached() {
+        User stale = user("jane", true);
+        when(userRepository.findUserByUsername("jane")).thenAnswer(invocation -> {
+            userCache.evict(stale);
+            return stale;
+        }).thenReturn(user("jane", false));
+
+        assertEquals(true, userCache.findUserByUsername("jane").getIsNotLocked());
+        assertEquals(false, userCache.findUserByUsername("jane").getIsNotLocked());
+    }
+
+    @Test
+    void aLoadBeforeTheCommitIsNotCachedAfterIt() {
+        TransactionSynchronizationManager.initSynchronization();
+        User user = user("jane", true);
+        userCache.evict(user);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        when(userRepository.findUserByUsername("jane")).thenAnswer(invocation -> {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            return user;
+        }).thenReturn(user("jane", false));
+
+        userCache.findUserByUsername("jane");
+
+        assertEquals(false, userCache.findUserByUsername("jane").getIsNotLocked());
+    }
+
+    @Test
+    void uncachedReadsNeitherReadNorFillTheCache() {
+        when(userRepository.findUserByUsername("jane")).thenReturn(user("jane", true));
+
+        userCache.findUserByUsername("jane");
+        userCache.findUncachedUserByUsername("jane");
+        userCache.evictUsername("jane");
+        userCache.findUncachedUserByUsername("jane");
+        userCache.findUserByUsername("jane");
+
+        verify(userRepository, times(4)).findUserByUsername("jane");
+    }
+
+    private static User user(String username, boolean isNotLocked) {
+        User user = new User();
+        user.setId(7L);
+        user.setUserId("ID_7");
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setRole("ROLE_USER");
+        user.setIsActive(true);
+        user.setIsNotLocked(isNotLocked);
+        return user;
+    }
+}
@@ -0,0 +1,234 @@
+package com.kenis.usermanager.service.impl;
+
+import com.kenis.usermanager.domain.User;
+import com.kenis.usermanager.domain.UserFilter;
+import com.kenis.usermanager.domain.UserIdentity;
+import com.kenis.usermanager.domain.UserPage;
+import com.kenis.usermanager.domain.UserSummary;
+import com.kenis.usermanager.exception.domain.EmailExistException;
+import com.kenis.usermanager.exception.domain.InvalidRoleException;
+import com.kenis.usermanager.exception.domain.UserIdExistException;
+import com.kenis.usermanager.exception.domain.UsernameExistException;
+import com.kenis.usermanager.repository.UserRepository;
+import com.kenis.usermanager.service.EmailService;
+import com.kenis.usermanager.service.LastLoginRecorder;
+import com.kenis.usermanager.service.LoginAttemptService;
+import com.kenis.usermanager.service.PasswordRehashService;
+import com.kenis.usermanager.service.RefreshTokenService;
+import com.kenis.usermanager.service.TokenEpochService;
+import com.kenis.usermanager.service.UserCache;
+import com.kenis.usermanager.utility.FieldsValidations;
+import com.kenis.usermanager.utility.UserIdGenerator;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.kenis.usermanager.constant.UserImpConstant.EMAIL_UNIQUE_CONSTRAINT;
+import static com.kenis.usermanager.constant.UserImpConstant.USERNAME_UNIQUE_CONSTRAINT;
+import static com.kenis.usermanager.constant.UserImpConstant.USER_ID_UNIQUE_CONSTRAINT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceImplTest {
+    private static final int PAGE_MAX_SIZE = 100;
+
+    private static final UserFilter NO_FILTER = new UserFilter(null, null, null, null);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private final RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+
+    private final UserServiceImpl userService = userService();
+
+    @BeforeEach
+    void bindRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void unbindRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void aFullPageFollowedByAnotherUserHasTheLastIdAsCursor() {
+        when(userRepository.findUsersAfter(40L, NO_FILTER, 3)).thenReturn(users(41, 42, 43));
+
+        UserPage<UserSummary> page = userService.getUsers(40L, 2, NO_FILTER);
+
+        assertEquals(List.of(41L, 42L), ids(page));
+        assertEquals(42L, page.getNextCursor());
+    }
+
+    @Test
+    void aFullPageWithoutAnotherUserIsTheLastPage() {
+        when(userRepository.findUsersAfter(40L, NO_FILTER, 3)).thenReturn(users(41, 42));
+
+        UserPage<UserSummary> page = userService.getUsers(40L, 2, NO_FILTER);
+
+        assertEquals(List.of(41L, 42L), ids(page));
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void aPageAfterTheLastUserIsEmpty() {
+        when(userRepository.findUsersAfter(eq(99L), eq(NO_FILTER), anyInt())).thenReturn(List.of());
+
+        UserPage<UserSummary> page = userService.getUsers(99L, 20, NO_FILTER);
+
+        assertEquals(List.of(), page.getUsers());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void thePageSizeIsClampedBetweenOneAndTheMaximum() {
+        when(userRepository.findUsersAfter(any(), any(), anyInt())).thenReturn(List.of());
+
+        userService.getUsers(null, 0, NO_FILTER);
+        userService.getUsers(null, -5, NO_FILTER);
+        userService.getUsers(null, PAGE_MAX_SIZE * 10, NO_FILTER);
+
+        verify(userRepository, times(2)).findUsersAfter(null, NO_FILTER, 2);
+        verify(userRepository).findUsersAfter(null, NO_FILTER, PAGE_MAX_SIZE + 1);
+    }
+
+    @Test
+    void aTakenUsernameIsReportedAsSuch() {
+        rejectSaveWith(USERNAME_UNIQUE_CONSTRAINT);
+
+        assertThrows(UsernameExistException.class, this::addNewUser);
+    }
+
+    @Test
+    void aTakenEmailIsReportedAsSuch() {
+        rejectSaveWith(EMAIL_UNIQUE_CONSTRAINT);
+
+        assertThrows(EmailExistException.class, this::addNewUser);
+    }
+
+    @Test
+    void aTakenUserIdIsReportedAsSuch() {
+        rejectSaveWith(USER_ID_UNIQUE_CONSTRAINT);
+
+        assertThrows(UserIdExistException.class, this::addNewUser);
+    }
+
+    @Test
+    void otherConstraintViolationsAreRethrown() {
+        DataIntegrityViolationException violation = rejectSaveWith("user_details_pkey");
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class, this::addNewUser));
+    }
+
+    @Test
+    void anUnknownRoleIsReportedAsSuch() {
+        assertThrows(InvalidRoleException.class, () -> userService.addNewUser(
+                "Jane", "Doe", "jane", "jane@example.com", "ROLE_NOBODY", true, true, null));
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void deletingAUserRevokesTheirRefreshTokens() {
+        when(userRepository.findUserById(7L)).thenReturn(user(true, true));
+
+        userService.deleteUser(7L);
+
+        verify(refreshTokenService).revokeRefreshTokens(7L);
+    }
+
+    @Test
+    void lockingOrDisablingAUserRevokesTheirRefreshTokens() throws Exception {
+        identify("jane");
+        when(userRepository.findUserByUsername("jane")).thenReturn(user(true, true));
+        userService.updateUser("jane", "Jane", "Doe", "jane", "jane@example.com", "ROLE_USER", false, true, null);
+        when(userRepository.findUserByUsername("jane")).thenReturn(user(true, true));
+        userService.updateUser("jane", "Jane", "Doe", "jane", "jane@example.com", "ROLE_USER", true, false, null);
+
+        verify(refreshTokenService, times(2)).revokeRefreshTokens(7L);
+    }
+
+    @Test
+    void otherUpdatesKeepTheRefreshTokens() throws Exception {
+        identify("jane");
+        when(userRepository.findUserByUsername("jane")).thenReturn(user(true, true));
+
+        userService.updateUser("jane", "Janet", "Doe", "jane", "jane@example.com", "ROLE_HR", true, true, null);
+
+        verify(refreshTokenService, never()).revokeRefreshTokens(any());
+    }
+
+    private DataIntegrityViolationException rejectSaveWith(String constraintName) {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException(), constraintName));
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(violation);
+        return violation;
+    }
+
+    private void addNewUser() throws Exception {
+        userService.addNewUser("Jane", "Doe", "jane", "jane@example.com", "ROLE_USER", true, true, null);
+    }
+
+    private UserServiceImpl userService() {
+        UserServiceImpl userService = new UserServiceImpl(userRepository, mock(PasswordEncoder.class),
+                mock(LoginAttemptService.class), mock(EmailService.class), mock(FieldsValidations.class),
+                mock(TokenEpochService.class), mock(LastLoginRecorder.class), mock(PasswordRehashService.class),
+                mock(UserCache.class), mock(UserIdGenerator.class), refreshTokenService);
+        ReflectionTestUtils.setField(userService, "pageMaxSize", PAGE_MAX_SIZE);
+        return userService;
+    }
+
+    private void identify(String username) {
+        UserIdentity identity = mock(UserIdentity.class);
+        when(identity.getId()).thenReturn(7L);
+        when(identity.getUsername()).thenReturn(username);
+        when(identity.getEmail()).thenReturn(username + "@example.com");
+        when(userRepository.findUserIdentities(eq(username), any(), any())).thenReturn(List.of(identity));
+    }
+
+    private static User user(boolean isNotLocked, boolean isActive) {
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("jane");
+        user.setEmail("jane@example.com");
+        user.setRole("ROLE_USER");
+        user.setIsNotLocked(isNotLocked);
+        user.setIsActive(isActive);
+        return user;
+    }
+
+    private static List<UserSummary> users(long... ids) {
+        List<UserSummary> users = new ArrayList<>();
+        for (long id : ids) {
+            users.add(new UserSummary(id, "ID_" + id, "Jane", "Doe", "user" + id, "user" + id + "@example.com",
+                    null, null, null, null, "ROLE_USER", true, true));
+        }
+        return users;
+    }
+
+    private static List<Long> ids(UserPage<UserSummary> page) {
+        List<Long> ids = new ArrayList<>();
+        page.getUsers().forEach(user -> ids.add(user.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,65 @@
+package com.kenis.usermanager.utility;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.kenis.usermanager.domain.VerifiedToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static com.kenis.usermanager.constant.SecurityConstant.AUTHORITIES;
+import static com.kenis.usermanager.constant.SecurityConstant.GET_ARRAY_LLC;
+import static com.kenis.usermanager.constant.SecurityConstant.LEGACY_EXPIRATION_TIME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class JWTTokenProviderTest {
+    private static final String SECRET = "legacy-secret";
+
+    @Test
+    void legacyTokensAreAcceptedForOneLegacyLifetimeWhenEnabled() {
+        JWTTokenProvider provider = provider(true);
+        long issuedAt = System.currentTimeMillis();
+        String token = legacyToken(issuedAt + LEGACY_EXPIRATION_TIME + 60_000);
+
+        VerifiedToken verifiedToken = provider.verifyToken(token);
+
+        assertTrue(verifiedToken.isLegacy());
+        assertNull(verifiedToken.getUserId());
+        assertEquals("jane.doe", verifiedToken.getSubject());
+        assertTrue(verifiedToken.getExpiresAt() <= System.currentTimeMillis() + LEGACY_EXPIRATION_TIME);
+        assertTrue(verifiedToken.getExpiresAt() >= issuedAt + LEGACY_EXPIRATION_TIME);
+    }
+
+    @Test
+    void legacyTokensAreRejectedWhenDisabled() {
+        JWTTokenProvider provider = provider(false);
+        String token = legacyToken(System.currentTimeMillis() + LEGACY_EXPIRATION_TIME);
+
+        assertThrows(JWTVerificationException.class, () -> provider.verifyToken(token));
+    }
+
+    private static JWTTokenProvider provider(boolean legacyTokensEnabled) {
+        JWTTokenProvider provider = new JWTTokenProvider(
+                new VerifiedTokenCache(false, 100, new SimpleMeterRegistry()), mock(JwtKeyRing.class));
+        ReflectionTestUtils.setField(provider, "secret", SECRET);
+        ReflectionTestUtils.setField(provider, "legacyTokensEnabled", legacyTokensEnabled);
+        provider.init();
+        return provider;
+    }
+
+    private static String legacyToken(long expiresAt) {
+        return JWT.create()
+                .withIssuer(GET_ARRAY_LLC)
+                .withSubject("jane.doe")
+                .withArrayClaim(AUTHORITIES, new String[]{"user:read"})
+                .withExpiresAt(new Date(expiresAt))
+                .sign(Algorithm.HMAC512(SECRET));
+    }
+}
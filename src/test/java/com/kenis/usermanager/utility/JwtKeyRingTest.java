@@ -0,0 +1,110 @@
+package com.kenis.usermanager.utility;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+
+import static com.kenis.usermanager.constant.SecurityConstant.GET_ARRAY_LLC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtKeyRingTest {
+    @TempDir
+    Path keyDirectory;
+
+    @Test
+    void nodesSharingTheKeyDirectoryAcceptEachOthersTokens() throws Exception {
+        writeKey("2026-01", rsaKeyPair(), true);
+        writeKey("2026-02", ecKeyPair(), true);
+        JwtKeyRing first = keyRing("");
+        JwtKeyRing second = keyRing("");
+
+        assertEquals("2026-02", first.getSigningKey().getKeyId());
+        String token = sign(first);
+        assertNotNull(second.getVerifier(JWT.decode(token).getKeyId()).verify(token));
+    }
+
+    @Test
+    void theConfiguredKeySignsAndPublicOnlyKeysOnlyVerify() throws Exception {
+        writeKey("2026-01", rsaKeyPair(), true);
+        writeKey("2026-02", rsaKeyPair(), false);
+
+        assertEquals("2026-01", keyRing("").getSigningKey().getKeyId());
+        assertEquals("2026-01", keyRing("2026-01").getSigningKey().getKeyId());
+        assertThrows(IllegalStateException.class, () -> keyRing("2026-02"));
+    }
+
+    @Test
+    void removedKeysAreRetiredAndAddedKeysTakeOverOnReload() throws Exception {
+        writeKey("2026-01", rsaKeyPair(), true);
+        JwtKeyRing keyRing = keyRing("");
+        String token = sign(keyRing);
+
+        Files.delete(keyDirectory.resolve("2026-01.pem"));
+        writeKey("2026-02", rsaKeyPair(), true);
+        keyRing.reloadKeys();
+
+        assertEquals("2026-02", keyRing.getSigningKey().getKeyId());
+        assertNotNull(keyRing.getVerifier("2026-01").verify(token));
+
+        ReflectionTestUtils.setField(keyRing, "gracePeriod", -1L);
+        keyRing.pruneRetiredKeys();
+        assertNull(keyRing.getVerifier("2026-01"));
+        assertNotNull(keyRing.getVerifier("2026-02"));
+    }
+
+    private JwtKeyRing keyRing(String signingKeyId) throws IOException {
+        JwtKeyRing keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "keyDirectory", keyDirectory.toString());
+        ReflectionTestUtils.setField(keyRing, "signingKeyId", signingKeyId);
+        ReflectionTestUtils.setField(keyRing, "gracePeriod", 900_000L);
+        keyRing.init();
+        return keyRing;
+    }
+
+    private static String sign(JwtKeyRing keyRing) {
+        JwtKeyRing.SigningKey signingKey = keyRing.getSigningKey();
+        return JWT.create()
+                .withKeyId(signingKey.getKeyId())
+                .withIssuer(GET_ARRAY_LLC)
+                .withSubject("jane.doe")
+                .sign(signingKey.getAlgorithm());
+    }
+
+    private void writeKey(String keyId, KeyPair keyPair, boolean withPrivateKey) throws IOException {
+        String pem = pem("PUBLIC KEY", keyPair.getPublic())
+                + (withPrivateKey ? pem("PRIVATE KEY", keyPair.getPrivate()) : "");
+        Files.writeString(keyDirectory.resolve(keyId + ".pem"), pem);
+    }
+
+    private static String pem(String type, Key key) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(key.getEncoded())
+                + "\n-----END " + type + "-----\n";
+    }
+
+    private static KeyPair rsaKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private static KeyPair ecKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,83 @@
+package com.kenis.usermanager.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeUserIdGeneratorTest {
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    @Test
+    void concurrentIdsAreUnique() throws Exception {
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(7, now::get);
+        int threads = 16;
+        int idsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<String> ids = new ArrayList<>(idsPerThread);
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(generator.generateUserId());
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+        Set<String> ids = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            ids.addAll(future.get(1, TimeUnit.MINUTES));
+        }
+        executor.shutdown();
+
+        assertEquals(threads * idsPerThread, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id.matches("ID_\\d+")));
+    }
+
+    @Test
+    void idsIncreaseWhenTheClockMovesBackwards() {
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(1, now::get);
+        long first = generator.nextId();
+        now.addAndGet(-5_000);
+        long second = generator.nextId();
+        now.addAndGet(10_000);
+        long third = generator.nextId();
+
+        assertTrue(second > first);
+        assertTrue(third > second);
+    }
+
+    @Test
+    void nodesGenerateDifferentIdsAtTheSameInstant() {
+        SnowflakeUserIdGenerator node1 = new SnowflakeUserIdGenerator(1, now::get);
+        SnowflakeUserIdGenerator node2 = new SnowflakeUserIdGenerator(2, now::get);
+
+        assertNotEquals(node1.generateUserId(), node2.generateUserId());
+    }
+
+    @Test
+    void nodeIdMustFitInTenBits() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeUserIdGenerator(1024, now::get));
+    }
+
+    @Test
+    void nodeIdMustBeSet() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeUserIdGenerator(-1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.kenis.usermanager.utility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTableTest {
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    void aFullBucketAllowsItsCapacityThenAsksToWait() {
+        TokenBucketTable table = new TokenBucketTable(1000);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, table.tryConsume("alice", 3, MINUTE, 0));
+        }
+        long wait = table.tryConsume("alice", 3, MINUTE, 0);
+
+        assertEquals(MINUTE / 3, wait);
+    }
+
+    @Test
+    void tokensAreRefilledOverTime() {
+        TokenBucketTable table = new TokenBucketTable(1000);
+        table.tryConsume("alice", 2, MINUTE, 0);
+        table.tryConsume("alice", 2, MINUTE, 0);
+
+        assertTrue(table.tryConsume("alice", 2, MINUTE, MINUTE / 4) > 0);
+        assertEquals(0, table.tryConsume("alice", 2, MINUTE, MINUTE / 2));
+    }
+
+    @Test
+    void bucketsOfDifferentKeysAreIndependent() {
+        TokenBucketTable table = new TokenBucketTable(1000);
+        assertEquals(0, table.tryConsume("alice", 1, MINUTE, 0));
+
+        assertTrue(table.tryConsume("alice", 1, MINUTE, 0) > 0);
+        assertEquals(0, table.tryConsume("bob", 1, MINUTE, 0));
+    }
+
+    @Test
+    void anEvictedKeyStartsWithAFullBucket() {
+        TokenBucketTable table = new TokenBucketTable(64);
+        table.tryConsume("alice", 1, MINUTE, 0);
+        for (int i = 0; i < 10_000; i++) {
+            table.tryConsume("key" + i, 1, MINUTE, 0);
+        }
+
+        assertEquals(0, table.tryConsume("alice", 1, MINUTE, 0));
+    }
+}